@@ -0,0 +1,322 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Non-interactive mode of VehicleRentalApp: replays a command file (or stdin) against the rental system.
+// One command per line, comma-separated like the data files; blank lines and lines starting with # are skipped.
+//
+//   ADD_VEHICLE,Type,Plate,Make,Model,Year[,Status],Extra   (same layout as vehicles.txt)
+//   ADD_CUSTOMER,ID,Name
+//   RENT,Plate,CustomerID,Amount[,Date[,DueDate]]
+//   RETURN,Plate,CustomerID,Fees[,Date]
+//   QUERY,VEHICLE,Plate | QUERY,CUSTOMER,ID | QUERY,AVAILABLE | QUERY,OVERDUE
+//
+// Consecutive adds are collected and stored with addVehicles/addCustomers, rents and returns run inside
+// a RentalSystem batch so the vehicle statuses are written once, per-operation messages are off, and
+// all output goes through one buffered writer. Only errors and query results are printed, then a summary.
+// An add counts as succeeded once it is stored, so one the system turns down when the adds are flushed
+// is reported against its own line.
+public class BatchRunner {
+    public enum Command { ADD_VEHICLE, ADD_CUSTOMER, RENT, RETURN, QUERY }
+
+    // Adds are flushed at least this often, so pending adds never pile up
+    private static final int MAX_PENDING = 65536;
+
+    private RentalSystem rentalSystem;
+    private PrintWriter out;
+
+    private List<Vehicle> pendingVehicles = new ArrayList<>();
+    private List<Customer> pendingCustomers = new ArrayList<>();
+    private List<Integer> pendingVehicleLines = new ArrayList<>();
+    private List<Integer> pendingCustomerLines = new ArrayList<>();
+    private Set<String> pendingPlates = new HashSet<>();
+    private Set<String> pendingCustomerIds = new HashSet<>();
+
+    private Summary summary;
+
+    public BatchRunner(RentalSystem rentalSystem, PrintWriter out) {
+        this.rentalSystem = rentalSystem;
+        this.out = out;
+    }
+
+    public Summary run(BufferedReader in) throws IOException {
+        summary = new Summary();
+        long start = System.nanoTime();
+        boolean verbose = rentalSystem.isVerbose();
+        rentalSystem.setVerbose(false);
+        rentalSystem.beginBatch();
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                execute(lineNumber, line);
+            }
+            flushAdds();
+        } finally {
+            rentalSystem.endBatch();
+            rentalSystem.setVerbose(verbose);
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        out.println(summary);
+        out.flush();
+        return summary;
+    }
+
+    private void execute(int lineNumber, String line) {
+        int comma = line.indexOf(',');
+        String verb = (comma < 0 ? line : line.substring(0, comma)).trim().toUpperCase();
+        String rest = comma < 0 ? "" : line.substring(comma + 1);
+        Command command;
+        try {
+            command = Command.valueOf(verb);
+        } catch (IllegalArgumentException e) {
+            summary.unknown++;
+            error(lineNumber, "unknown command " + verb);
+            return;
+        }
+        if (command != Command.ADD_VEHICLE && command != Command.ADD_CUSTOMER) {
+            // Later commands must see everything added before them
+            flushAdds();
+        }
+        String problem;
+        try {
+            switch (command) {
+                case ADD_VEHICLE:
+                    problem = addVehicle(lineNumber, rest);
+                    break;
+                case ADD_CUSTOMER:
+                    problem = addCustomer(lineNumber, rest);
+                    break;
+                case RENT:
+                    problem = rent(rest.split(",", -1));
+                    break;
+                case RETURN:
+                    problem = returnVehicle(rest.split(",", -1));
+                    break;
+                default:
+                    problem = query(rest.split(",", -1));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            problem = e.getMessage();
+        }
+        if (problem == null && (command == Command.ADD_VEHICLE || command == Command.ADD_CUSTOMER)) {
+            // Counted when it is flushed
+            return;
+        }
+        count(lineNumber, command, problem);
+    }
+
+    private void count(int lineNumber, Command command, String problem) {
+        summary.count(command, problem == null);
+        if (problem != null) {
+            error(lineNumber, command + " failed: " + problem);
+        }
+    }
+
+    private String addVehicle(int lineNumber, String fields) {
+        Vehicle vehicle = VehicleCodecs.decode(fields);
+        String plate = vehicle.getLicensePlate();
+        if (!pendingPlates.add(plate) || rentalSystem.findVehicleByPlate(plate) != null) {
+            return "vehicle " + plate + " already exists";
+        }
+        pendingVehicles.add(vehicle);
+        pendingVehicleLines.add(lineNumber);
+        if (pendingVehicles.size() >= MAX_PENDING) {
+            flushAdds();
+        }
+        return null;
+    }
+
+    private String addCustomer(int lineNumber, String fields) {
+        String[] parts = fields.split(",", 2);
+        if (parts.length < 2 || parts[0].trim().isEmpty()) {
+            return "expected ID,Name";
+        }
+        Customer customer = new Customer(parts[0].trim(), parts[1].trim());
+        if (!pendingCustomerIds.add(customer.getCustomerId()) || rentalSystem.findCustomerById(customer.getCustomerId()) != null) {
+            return "customer " + customer.getCustomerId() + " already exists";
+        }
+        pendingCustomers.add(customer);
+        pendingCustomerLines.add(lineNumber);
+        if (pendingCustomers.size() >= MAX_PENDING) {
+            flushAdds();
+        }
+        return null;
+    }
+
+    // An add is stored if the system now holds the queued object itself
+    private void flushAdds() {
+        if (!pendingVehicles.isEmpty()) {
+            rentalSystem.addVehicles(pendingVehicles);
+            for (int i = 0; i < pendingVehicles.size(); i++) {
+                String plate = pendingVehicles.get(i).getLicensePlate();
+                boolean stored = rentalSystem.findVehicleByPlate(plate) == pendingVehicles.get(i);
+                count(pendingVehicleLines.get(i), Command.ADD_VEHICLE, stored ? null : "vehicle " + plate + " was not stored");
+            }
+            pendingVehicles.clear();
+            pendingVehicleLines.clear();
+            pendingPlates.clear();
+        }
+        if (!pendingCustomers.isEmpty()) {
+            rentalSystem.addCustomers(pendingCustomers);
+            for (int i = 0; i < pendingCustomers.size(); i++) {
+                String id = pendingCustomers.get(i).getCustomerId();
+                boolean stored = rentalSystem.findCustomerById(id) == pendingCustomers.get(i);
+                count(pendingCustomerLines.get(i), Command.ADD_CUSTOMER, stored ? null : "customer " + id + " was not stored");
+            }
+            pendingCustomers.clear();
+            pendingCustomerLines.clear();
+            pendingCustomerIds.clear();
+        }
+    }
+
+    private String rent(String[] parts) {
+        if (parts.length < 3) {
+            return "expected Plate,CustomerID,Amount[,Date[,DueDate]]";
+        }
+        Vehicle vehicle = rentalSystem.findVehicleByPlate(parts[0].trim().toUpperCase());
+        Customer customer = rentalSystem.findCustomerById(parts[1].trim());
+        if (vehicle == null || customer == null) {
+            return (vehicle == null ? "vehicle " + parts[0].trim() : "customer " + parts[1].trim()) + " not found";
+        }
+        double amount = Double.parseDouble(parts[2].trim());
+        LocalDate date = parts.length > 3 && !parts[3].trim().isEmpty() ? LocalDate.parse(parts[3].trim()) : LocalDate.now();
+        LocalDate dueDate = parts.length > 4 && !parts[4].trim().isEmpty() ? LocalDate.parse(parts[4].trim()) : null;
+        if (dueDate != null && dueDate.isBefore(date)) {
+            return "due date " + dueDate + " is before the rental date";
+        }
+        if (!rentalSystem.rentVehicle(vehicle, customer, date, amount, dueDate)) {
+            return "vehicle " + vehicle.getLicensePlate() + " is " + vehicle.getStatus();
+        }
+        return null;
+    }
+
+    private String returnVehicle(String[] parts) {
+        if (parts.length < 3) {
+            return "expected Plate,CustomerID,Fees[,Date]";
+        }
+        Vehicle vehicle = rentalSystem.findVehicleByPlate(parts[0].trim().toUpperCase());
+        Customer customer = rentalSystem.findCustomerById(parts[1].trim());
+        if (vehicle == null || customer == null) {
+            return (vehicle == null ? "vehicle " + parts[0].trim() : "customer " + parts[1].trim()) + " not found";
+        }
+        double fees = Double.parseDouble(parts[2].trim());
+        LocalDate date = parts.length > 3 && !parts[3].trim().isEmpty() ? LocalDate.parse(parts[3].trim()) : LocalDate.now();
+        if (!rentalSystem.returnVehicle(vehicle, customer, date, fees)) {
+            return "vehicle " + vehicle.getLicensePlate() + " is not rented";
+        }
+        return null;
+    }
+
+    private String query(String[] parts) {
+        String what = parts[0].trim().toUpperCase();
+        String key = parts.length > 1 ? parts[1].trim() : "";
+        switch (what) {
+            case "VEHICLE":
+                Vehicle vehicle = rentalSystem.findVehicleByPlate(key.toUpperCase());
+                if (vehicle == null) {
+                    return "vehicle " + key + " not found";
+                }
+                StringBuilder row = new StringBuilder(vehicle.getInfo());
+                RentalRecord rent = rentalSystem.getRentalHistory().getOpenRental(vehicle.getLicensePlate());
+                if (rent != null) {
+                    row.append(" rented by ").append(rent.getCustomer().getCustomerId())
+                        .append(" due ").append(rentalSystem.getDueDate(rent));
+                    if (rentalSystem.isOverdue(vehicle)) {
+                        row.append(" OVERDUE");
+                    }
+                }
+                out.println(row);
+                return null;
+            case "CUSTOMER":
+                Customer customer = rentalSystem.findCustomerById(key);
+                if (customer == null) {
+                    return "customer " + key + " not found";
+                }
+                out.println(customer.getCustomerId() + "," + customer.getCustomerName());
+                return null;
+            case "AVAILABLE":
+                out.println("Available vehicles: " + rentalSystem.countVehicles(VehicleFilter.status(Vehicle.VehicleStatus.AVAILABLE)));
+                return null;
+            case "OVERDUE":
+                List<RentalRecord> overdue = rentalSystem.getOverdueRentals();
+                out.println("Overdue rentals: " + overdue.size());
+                for (RentalRecord record : overdue) {
+                    out.println("  " + record);
+                }
+                return null;
+            default:
+                return "expected VEHICLE, CUSTOMER, AVAILABLE or OVERDUE";
+        }
+    }
+
+    private void error(int lineNumber, String message) {
+        out.println("Line " + lineNumber + ": " + message);
+    }
+
+    public static class Summary {
+        private Map<Command, int[]> counts = new EnumMap<>(Command.class); // {succeeded, failed}
+        private int unknown = 0;
+        private long elapsedNanos;
+
+        void count(Command command, boolean succeeded) {
+            counts.computeIfAbsent(command, c -> new int[2])[succeeded ? 0 : 1]++;
+        }
+
+        public int getSucceeded(Command command) {
+            int[] count = counts.get(command);
+            return count == null ? 0 : count[0];
+        }
+
+        public int getFailed() {
+            int failed = unknown;
+            for (int[] count : counts.values()) {
+                failed += count[1];
+            }
+            return failed;
+        }
+
+        public int getCommands() {
+            int total = unknown;
+            for (int[] count : counts.values()) {
+                total += count[0] + count[1];
+            }
+            return total;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            long millis = elapsedNanos / 1_000_000;
+            StringBuilder sb = new StringBuilder();
+            sb.append("Batch finished: ").append(getCommands()).append(" commands in ").append(millis).append(" ms");
+            if (millis > 0) {
+                sb.append(" (").append(getCommands() * 1000L / millis).append(" ops/s)");
+            }
+            for (Map.Entry<Command, int[]> entry : counts.entrySet()) {
+                sb.append(System.lineSeparator()).append(String.format("  %-12s %8d ok %8d failed",
+                    entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+            if (unknown > 0) {
+                sb.append(System.lineSeparator()).append(String.format("  %-12s %20d failed", "UNKNOWN", unknown));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Compact append-only binary logs: vehicles.bin, customers.bin and rental_records.bin.
+// A status change appends a few bytes to vehicles.bin instead of rewriting the fleet; the log
+// is replayed on load and rewritten as a snapshot once it holds too many stale entries.
+// A torn entry at the end of a log (crash mid-append) is cut off when the storage is opened,
+// before anything can be appended behind it.
+public class BinaryLogStorage implements RentalStorage {
+    private static final byte VEHICLE_ENTRY = 'V';
+    private static final byte STATUS_ENTRY = 'S';
+
+    private static final byte RENT = 0;
+    private static final byte RETURN = 1;
+    private static final byte RENT_WITH_DUE_DATE = 2; // followed by the due date as an epoch day
+    private static final byte SUMMARY = 3;            // compacted rental, followed by its end date
+
+    private String vehiclesFile;
+    private String customersFile;
+    private String recordsFile;
+    private String recordsArchiveFile;
+    private String checkpointsFile;
+    private String servicePointsFile;
+    private DurableFiles files;
+
+    public BinaryLogStorage(String directory, DurableFiles files) throws IOException {
+        this.vehiclesFile = Paths.get(directory, "vehicles.bin").toString();
+        this.customersFile = Paths.get(directory, "customers.bin").toString();
+        this.recordsFile = Paths.get(directory, "rental_records.bin").toString();
+        this.recordsArchiveFile = Paths.get(directory, "rental_records_archive.bin").toString();
+        this.checkpointsFile = Paths.get(directory, "fleet_checkpoints.txt").toString();
+        this.servicePointsFile = Paths.get(directory, "service_points.txt").toString();
+        this.files = files;
+        ByteBuffer scratch = ByteBuffer.allocate(VehicleCodecs.MAX_EXTRA_BYTES);
+        Map<String, Vehicle> scanned = new HashMap<>();
+        truncateTornTail(vehiclesFile, in -> readVehicleEntry(in, scratch, scanned));
+        truncateTornTail(customersFile, in -> {
+            in.readUTF();
+            in.readUTF();
+        });
+        truncateTornTail(recordsFile, BinaryLogStorage::readRecord);
+    }
+
+    @Override
+    public List<Vehicle> loadVehicles() throws IOException {
+        Map<String, Vehicle> vehicles = new LinkedHashMap<>();
+        int entries = 0;
+        ByteBuffer scratch = ByteBuffer.allocate(VehicleCodecs.MAX_EXTRA_BYTES);
+        try (DataInputStream in = open(vehiclesFile, Long.MAX_VALUE)) {
+            while (true) {
+                readVehicleEntry(in, scratch, vehicles);
+                entries++;
+            }
+        }
+        catch (EOFException | NoSuchFileException e) {
+            // End of log
+        }
+        List<Vehicle> result = new ArrayList<>(vehicles.values());
+        if (entries > 2 * result.size() + 64) {
+            writeSnapshot(result);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Customer> loadCustomers() throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        try (DataInputStream in = open(customersFile, Long.MAX_VALUE)) {
+            while (true) {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                customers.add(new Customer(id, name));
+            }
+        }
+        catch (EOFException | NoSuchFileException e) {
+            // End of log
+        }
+        return customers;
+    }
+
+    @Override
+    public long recordsMark() {
+        return Paths.get(recordsFile).toFile().length();
+    }
+
+    @Override
+    public List<RentalRecord> loadRecords(Map<String, Vehicle> vehicleIndex, Map<String, Customer> customerIndex, long mark) throws IOException {
+        RecordCompactor.Replay records = new RecordCompactor.Replay();
+        try (DataInputStream in = open(recordsFile, mark)) {
+            while (true) {
+                RecordCompactor.Entry entry = readRecord(in);
+                Vehicle vehicle = vehicleIndex.get(entry.plate);
+                Customer customer = customerIndex.get(entry.customerId);
+                if (vehicle == null || customer == null) {
+                    continue;
+                }
+                if (entry.type.equals(RecordCompactor.SUMMARY)) {
+                    records.addSummary(vehicle, customer, entry.date, entry.end, entry.amount);
+                } else {
+                    records.add(new RentalRecord(vehicle, customer, entry.date, entry.amount, entry.type, entry.due));
+                }
+            }
+        }
+        catch (EOFException | NoSuchFileException e) {
+            // End of log
+        }
+        return records.finish();
+    }
+
+    @Override
+    public void saveVehicles(Collection<? extends Vehicle> newVehicles) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteBuffer scratch = ByteBuffer.allocate(VehicleCodecs.MAX_EXTRA_BYTES);
+        for (Vehicle vehicle : newVehicles) {
+            out.writeByte(VEHICLE_ENTRY);
+            writeVehicle(out, vehicle, scratch);
+        }
+        files.appendBytes(vehiclesFile, bytes.toByteArray());
+    }
+
+    @Override
+    public void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STATUS_ENTRY);
+        out.writeUTF(vehicle.getLicensePlate());
+        out.writeByte(vehicle.getStatus().ordinal());
+        files.appendBytes(vehiclesFile, bytes.toByteArray());
+    }
+
+    @Override
+    public void saveCustomers(Collection<? extends Customer> newCustomers) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Customer customer : newCustomers) {
+            out.writeUTF(customer.getCustomerId());
+            out.writeUTF(customer.getCustomerName());
+        }
+        files.appendBytes(customersFile, bytes.toByteArray());
+    }
+
+    // Synchronized with compactRecords, which rewrites the log from what it read
+    @Override
+    public synchronized void saveRecord(RentalRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeRecord(new DataOutputStream(bytes), RecordCompactor.Entry.of(record));
+        files.appendBytes(recordsFile, bytes.toByteArray());
+    }
+
+    @Override
+    public synchronized RecordCompactor.Result compactRecords(LocalDate cutoff, boolean archive) throws IOException {
+        List<RecordCompactor.Entry> entries = new ArrayList<>();
+        try (DataInputStream in = open(recordsFile, Long.MAX_VALUE)) {
+            while (true) {
+                entries.add(readRecord(in));
+            }
+        }
+        catch (EOFException | NoSuchFileException e) {
+            // End of log
+        }
+        List<RecordCompactor.Entry> original = new ArrayList<>(entries);
+        List<Integer> folded = RecordCompactor.fold(entries, cutoff);
+        if (folded.isEmpty()) {
+            return new RecordCompactor.Result(entries.size(), entries.size(), 0);
+        }
+        // Archive first, as RecordCompactor does for the text file
+        if (archive) {
+            ByteArrayOutputStream archived = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(archived);
+            for (int i : folded) {
+                writeRecord(out, original.get(i));
+            }
+            files.appendBytes(recordsArchiveFile, archived.toByteArray());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int kept = 0;
+        for (RecordCompactor.Entry entry : entries) {
+            if (entry != null) {
+                writeRecord(out, entry);
+                kept++;
+            }
+        }
+        files.replace(recordsFile, bytes.toByteArray());
+        return new RecordCompactor.Result(original.size(), kept, folded.size() / 2);
+    }
+
+    @Override
+    public SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() throws IOException {
+        return FleetCheckpoints.read(checkpointsFile);
+    }
+
+    @Override
+    public void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) throws IOException {
+        files.append(checkpointsFile, FleetCheckpoints.format(day, checkpoint));
+    }
+
+    @Override
+    public void dropCheckpoints(LocalDate from) throws IOException {
+        FleetCheckpoints.dropFrom(checkpointsFile, from, files);
+    }
+
+    @Override
+    public Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() throws IOException {
+        return MaintenanceScheduler.readServicePoints(servicePointsFile);
+    }
+
+    @Override
+    public void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) throws IOException {
+        files.append(servicePointsFile, MaintenanceScheduler.format(plate, point));
+    }
+
+    @Override
+    public DurableFiles.Durability getDurability() {
+        return files.getDurability();
+    }
+
+    @Override
+    public void setDurability(DurableFiles.Durability durability) throws IOException {
+        files.setDurability(durability);
+    }
+
+    @Override
+    public void close() throws IOException {
+        files.sync();
+    }
+
+    private void writeSnapshot(List<Vehicle> vehicles) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteBuffer scratch = ByteBuffer.allocate(VehicleCodecs.MAX_EXTRA_BYTES);
+        for (Vehicle vehicle : vehicles) {
+            out.writeByte(VEHICLE_ENTRY);
+            writeVehicle(out, vehicle, scratch);
+        }
+        files.replace(vehiclesFile, bytes.toByteArray());
+    }
+
+    private static void writeRecord(DataOutputStream out, RecordCompactor.Entry entry) throws IOException {
+        out.writeUTF(entry.plate);
+        out.writeUTF(entry.customerId);
+        out.writeInt((int) entry.date.toEpochDay());
+        out.writeDouble(entry.amount);
+        if (entry.type.equals(RecordCompactor.SUMMARY)) {
+            out.writeByte(SUMMARY);
+            out.writeInt((int) entry.end.toEpochDay());
+        } else if (!"RENT".equals(entry.type)) {
+            out.writeByte(RETURN);
+        } else if (entry.due == null) {
+            out.writeByte(RENT);
+        } else {
+            out.writeByte(RENT_WITH_DUE_DATE);
+            out.writeInt((int) entry.due.toEpochDay());
+        }
+    }
+
+    private static RecordCompactor.Entry readRecord(DataInputStream in) throws IOException {
+        String plate = in.readUTF();
+        String customerId = in.readUTF();
+        LocalDate date = LocalDate.ofEpochDay(in.readInt());
+        double amount = in.readDouble();
+        byte type = in.readByte();
+        switch (type) {
+            case RENT:
+                return new RecordCompactor.Entry(plate, customerId, date, amount, "RENT", null);
+            case RETURN:
+                return new RecordCompactor.Entry(plate, customerId, date, amount, "RETURN", null);
+            case RENT_WITH_DUE_DATE:
+                return new RecordCompactor.Entry(plate, customerId, date, amount, "RENT", LocalDate.ofEpochDay(in.readInt()));
+            case SUMMARY:
+                return new RecordCompactor.Entry(plate, customerId, date, amount, RecordCompactor.SUMMARY, LocalDate.ofEpochDay(in.readInt()));
+            default:
+                throw new IOException("Corrupt rental record type: " + type);
+        }
+    }
+
+    // A vehicle, or a status change applied to the vehicles read so far
+    private static void readVehicleEntry(DataInputStream in, ByteBuffer scratch, Map<String, Vehicle> vehicles) throws IOException {
+        byte entry = in.readByte();
+        if (entry == VEHICLE_ENTRY) {
+            Vehicle vehicle;
+            try {
+                vehicle = readVehicle(in, scratch);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt vehicle entry: " + e.getMessage(), e);
+            }
+            vehicles.putIfAbsent(vehicle.getLicensePlate(), vehicle);
+        }
+        else if (entry == STATUS_ENTRY) {
+            Vehicle vehicle = vehicles.get(in.readUTF());
+            Vehicle.VehicleStatus status = status(in.readByte());
+            if (vehicle != null) {
+                vehicle.setStatus(status);
+            }
+        }
+        else {
+            throw new IOException("Corrupt vehicle log entry: " + entry);
+        }
+    }
+
+    private static Vehicle.VehicleStatus status(byte ordinal) throws IOException {
+        Vehicle.VehicleStatus[] statuses = Vehicle.VehicleStatus.values();
+        if (ordinal < 0 || ordinal >= statuses.length) {
+            throw new IOException("Corrupt vehicle status: " + ordinal);
+        }
+        return statuses[ordinal];
+    }
+
+    private interface EntryReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    // Cuts the log back to the end of its last complete entry. Only a log that ends in a partial
+    // entry, or in zeros as some file systems leave after a crash, is cut; an entry that can't be
+    // read in the middle of the log is corruption and fails the open instead of losing data.
+    private static void truncateTornTail(String file, EntryReader reader) throws IOException {
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            return;
+        }
+        long complete = 0;
+        try (LimitedInputStream counter = new LimitedInputStream(
+                 new BufferedInputStream(Files.newInputStream(path)), Long.MAX_VALUE);
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                reader.read(in);
+                complete = counter.getPosition();
+            }
+        }
+        catch (EOFException e) {
+            // complete is where the torn entry, if any, starts
+        }
+        catch (IOException e) {
+            if (!zerosFrom(path, complete)) {
+                throw new IOException("Corrupt " + path.getFileName() + " at byte " + complete + ": " + e.getMessage(), e);
+            }
+        }
+        long size = Files.size(path);
+        if (complete < size) {
+            System.err.println("Cutting " + (size - complete) + " bytes of a torn entry off " + path.getFileName());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+                channel.force(true);
+            }
+        }
+    }
+
+    private static boolean zerosFrom(Path path, long offset) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = in.skip(offset - skipped);
+                if (n <= 0) {
+                    return false;
+                }
+                skipped += n;
+            }
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static DataInputStream open(String file, long limit) throws IOException {
+        InputStream in = Files.newInputStream(Paths.get(file));
+        return new DataInputStream(new BufferedInputStream(new LimitedInputStream(in, limit)));
+    }
+
+    // Common fields, then the type-specific part as written by the type's codec
+    private static void writeVehicle(DataOutputStream out, Vehicle v, ByteBuffer scratch) throws IOException {
+        VehicleCodec<?> codec;
+        try {
+            codec = VehicleCodecs.forVehicle(v);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        out.writeByte(codec.getTypeId());
+        out.writeUTF(v.getLicensePlate());
+        out.writeUTF(v.getMake());
+        out.writeUTF(v.getModel());
+        out.writeInt(v.getYear());
+        out.writeByte(v.getStatus().ordinal());
+        scratch.clear();
+        codec.writeFields(v, scratch);
+        out.write(scratch.array(), 0, scratch.position());
+    }
+
+    private static Vehicle readVehicle(DataInputStream in, ByteBuffer scratch) throws IOException {
+        byte type = in.readByte();
+        VehicleCodec<?> codec = VehicleCodecs.forId(type);
+        if (codec == null) {
+            throw new IOException("Corrupt vehicle type: " + type);
+        }
+        String plate = in.readUTF();
+        String make = in.readUTF();
+        String model = in.readUTF();
+        int year = in.readInt();
+        Vehicle.VehicleStatus status = status(in.readByte());
+        scratch.clear();
+        in.readFully(scratch.array(), 0, codec.getExtraBytes());
+        scratch.limit(codec.getExtraBytes());
+        Vehicle vehicle = codec.readFields(make, model, year, scratch);
+        vehicle.setLicensePlate(plate);
+        vehicle.setStatus(status);
+        return vehicle;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+// High-throughput import of vehicle and customer CSV files.
+// Rows are parsed and validated in parallel, de-duplicated against the fleet and the file
+// itself with a hash set, and all accepted rows are persisted with a single write at the end.
+//
+// Vehicles: Type,Plate,Make,Model,Year[,Status],Extra  (same layout as vehicles.txt)
+// Customers: ID,Name  (the name may contain commas)
+public class BulkImporter {
+    private static final int CHUNK_SIZE = 4096;
+
+    private RentalSystem rentalSystem;
+
+    public BulkImporter(RentalSystem rentalSystem) {
+        this.rentalSystem = rentalSystem;
+    }
+
+    public ImportReport importVehicles(String csvFile) throws IOException {
+        return importRows(csvFile, "type", Vehicle.class, VehicleCodecs::decode, Vehicle::getLicensePlate,
+            plate -> rentalSystem.findVehicleByPlate(plate) != null, rentalSystem::addVehicles);
+    }
+
+    public ImportReport importCustomers(String csvFile) throws IOException {
+        return importRows(csvFile, "id", Customer.class, BulkImporter::parseCustomer, Customer::getCustomerId,
+            id -> rentalSystem.findCustomerById(id) != null, rentalSystem::addCustomers);
+    }
+
+    // Streams the file a chunk of lines at a time: each chunk is parsed in parallel, then checked for
+    // duplicates in file order, so only the accepted rows are held until the final write
+    private <T> ImportReport importRows(String csvFile, String headerColumn, Class<T> type,
+            Function<String, T> parser, Function<T, String> key, Predicate<String> known,
+            Function<List<T>, Integer> addAll) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        Set<String> seen = new HashSet<>();
+        List<T> accepted = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(csvFile), StandardCharsets.UTF_8)) {
+            int lineNumber = 1;
+            String line = reader.readLine();
+            if (line != null && line.trim().toLowerCase().startsWith(headerColumn + ",")) {
+                line = reader.readLine();
+                lineNumber++;
+            }
+            int chunkStart = lineNumber;
+            while (line != null) {
+                chunk.add(line);
+                if (chunk.size() == CHUNK_SIZE) {
+                    validate(chunk, chunkStart, type, parser, key, known, seen, accepted, report);
+                    chunkStart += chunk.size();
+                    chunk.clear();
+                }
+                line = reader.readLine();
+            }
+            validate(chunk, chunkStart, type, parser, key, known, seen, accepted, report);
+        }
+        report.setAccepted(addAll.apply(accepted));
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private static <T> void validate(List<String> lines, int firstLineNumber, Class<T> type,
+            Function<String, T> parser, Function<T, String> key, Predicate<String> known,
+            Set<String> seen, List<T> accepted, ImportReport report) {
+        Object[] parsed = new Object[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            if (lines.get(i).trim().isEmpty()) {
+                return;
+            }
+            try {
+                parsed[i] = parser.apply(lines.get(i));
+            } catch (IllegalArgumentException e) {
+                parsed[i] = e.getMessage();
+            }
+        });
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (parsed[i] == null) {
+                continue;
+            }
+            if (!type.isInstance(parsed[i])) {
+                report.reject(firstLineNumber + i, lines.get(i), (String) parsed[i]);
+                continue;
+            }
+            T row = type.cast(parsed[i]);
+            if (!seen.add(key.apply(row)) || known.test(key.apply(row))) {
+                report.duplicate(firstLineNumber + i, lines.get(i));
+                continue;
+            }
+            accepted.add(row);
+        }
+    }
+
+    // The name is everything after the first comma, so "C1,Doe, John" is customer Doe, John
+    private static Customer parseCustomer(String line) {
+        String[] parts = line.split(",", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected 2 fields but found " + parts.length);
+        }
+        String id = parts[0].trim();
+        String name = parts[1].trim();
+        if (id.isEmpty() || name.isEmpty()) {
+            throw new IllegalArgumentException("Customer ID and name are required.");
+        }
+        return new Customer(id, name);
+    }
+
+    public static class ImportReport {
+        // Only the first bad rows are kept so a broken file can't exhaust memory
+        public static final int MAX_REPORTED_ROWS = 1000;
+
+        private int accepted;
+        private int rejectedCount;
+        private int duplicateCount;
+        private long elapsedNanos;
+        private List<String> badRows = new ArrayList<>();
+
+        void reject(int lineNumber, String line, String reason) {
+            rejectedCount++;
+            report("Line " + lineNumber + ": " + reason + " -> " + line);
+        }
+
+        void duplicate(int lineNumber, String line) {
+            duplicateCount++;
+            report("Line " + lineNumber + ": duplicate -> " + line);
+        }
+
+        private void report(String row) {
+            if (badRows.size() < MAX_REPORTED_ROWS) {
+                badRows.add(row);
+            }
+        }
+
+        void setAccepted(int accepted) {
+            this.accepted = accepted;
+        }
+
+        void setElapsedNanos(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getRejected() {
+            return rejectedCount;
+        }
+
+        public int getDuplicates() {
+            return duplicateCount;
+        }
+
+        public List<String> getBadRows() {
+            return badRows;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "Imported: " + accepted + " | Rejected: " + rejectedCount +
+                   " | Duplicates: " + duplicateCount + " | Time: " + getElapsedMillis() + " ms";
+        }
+    }
+}
@@ -10,6 +10,16 @@ public class Car extends Vehicle implements Rentable {
         return numSeats;
     }
 
+    @Override
+    public Attribute getAttribute() {
+        return Attribute.SEATS;
+    }
+
+    @Override
+    public double getAttributeValue() {
+        return numSeats;
+    }
+
     @Override
     public String getInfo() {
         return super.getInfo() + " | Seats: " + numSeats;
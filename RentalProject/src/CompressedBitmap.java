@@ -0,0 +1,482 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints, laid out like a Roaring bitmap: values are grouped by
+// their upper 16 bits, and each group of low 16 bits is held in a container that is either a
+// sorted char array (up to 4096 values) or a plain 65536-bit bitmap, whichever is smaller.
+// and() and or() work container by container and return new bitmaps; add() and remove() change this one.
+public class CompressedBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+
+    public CompressedBitmap() {
+    }
+
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char key = high(value);
+        int i = Arrays.binarySearch(keys, key);
+        if (i >= 0) {
+            containers[i] = containers[i].add(low(value));
+            return;
+        }
+        int at = -i - 1;
+        keys = insert(keys, at, key);
+        Container[] grown = new Container[containers.length + 1];
+        System.arraycopy(containers, 0, grown, 0, at);
+        System.arraycopy(containers, at, grown, at + 1, containers.length - at);
+        grown[at] = new ArrayContainer().add(low(value));
+        containers = grown;
+    }
+
+    public void remove(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        if (i < 0) {
+            return;
+        }
+        containers[i] = containers[i].remove(low(value));
+        if (containers[i].cardinality() == 0) {
+            removeAt(i);
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (Container container : containers) {
+            total += container.cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int n = Math.min(keys.length, other.keys.length);
+        char[] resultKeys = new char[n];
+        Container[] resultContainers = new Container[n];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality() > 0) {
+                    resultKeys[count] = keys[i];
+                    resultContainers[count++] = c;
+                }
+                i++;
+                j++;
+            }
+        }
+        result.keys = Arrays.copyOf(resultKeys, count);
+        result.containers = Arrays.copyOf(resultContainers, count);
+        return result;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        char[] resultKeys = new char[keys.length + other.keys.length];
+        Container[] resultContainers = new Container[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = containers[i++].copy();
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                resultContainers[count++] = other.containers[j++].copy();
+            } else {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        result.keys = Arrays.copyOf(resultKeys, count);
+        result.containers = Arrays.copyOf(resultContainers, count);
+        return result;
+    }
+
+    // Union of many bitmaps in one pass: each key is accumulated into a single word array
+    // instead of copying intermediate results, which is what range filters over buckets need
+    public static CompressedBitmap orAll(Iterable<CompressedBitmap> bitmaps) {
+        TreeMap<Character, long[]> accumulated = new TreeMap<>();
+        for (CompressedBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.keys.length; i++) {
+                bitmap.containers[i].orInto(accumulated.computeIfAbsent(bitmap.keys[i], k -> new long[WORDS]));
+            }
+        }
+        CompressedBitmap result = new CompressedBitmap();
+        result.keys = new char[accumulated.size()];
+        result.containers = new Container[accumulated.size()];
+        int count = 0;
+        for (Map.Entry<Character, long[]> entry : accumulated.entrySet()) {
+            int cardinality = 0;
+            for (long word : entry.getValue()) {
+                cardinality += Long.bitCount(word);
+            }
+            result.keys[count] = entry.getKey();
+            result.containers[count++] = BitmapContainer.shrink(new BitmapContainer(entry.getValue(), cardinality));
+        }
+        return result;
+    }
+
+    // Values in this bitmap that are not in the other one
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        char[] resultKeys = new char[keys.length];
+        Container[] resultContainers = new Container[keys.length];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            int j = Arrays.binarySearch(other.keys, keys[i]);
+            Container c = j < 0 ? containers[i].copy() : containers[i].andNot(other.containers[j]);
+            if (c.cardinality() > 0) {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = c;
+            }
+        }
+        result.keys = Arrays.copyOf(resultKeys, count);
+        result.containers = Arrays.copyOf(resultContainers, count);
+        return result;
+    }
+
+    // Visits the values in ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] next = {0};
+        forEach(v -> values[next[0]++] = v);
+        return values;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        result.keys = keys.clone();
+        result.containers = new Container[containers.length];
+        for (int i = 0; i < containers.length; i++) {
+            result.containers[i] = containers[i].copy();
+        }
+        return result;
+    }
+
+    private void removeAt(int i) {
+        char[] shrunkKeys = new char[keys.length - 1];
+        Container[] shrunk = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, shrunkKeys, 0, i);
+        System.arraycopy(keys, i + 1, shrunkKeys, i, keys.length - i - 1);
+        System.arraycopy(containers, 0, shrunk, 0, i);
+        System.arraycopy(containers, i + 1, shrunk, i, containers.length - i - 1);
+        keys = shrunkKeys;
+        containers = shrunk;
+    }
+
+    private static char high(int value) {
+        if (value < 0) throw new IllegalArgumentException("Bitmap values must be >= 0");
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private static char[] insert(char[] array, int at, char value) {
+        char[] grown = new char[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, at);
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        grown[at] = value;
+        return grown;
+    }
+
+    private abstract static class Container {
+        abstract boolean contains(char value);
+        // add and remove may return a different container when the representation changes
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract int cardinality();
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+        abstract void forEach(int base, IntConsumer action);
+        abstract void orInto(long[] words);
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            int at = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, size * 2)));
+            }
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer that = (ArrayContainer) other;
+            char[] merged = new char[size + that.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < that.size) {
+                if (j == that.size || (i < size && values[i] < that.values[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == size || values[i] > that.values[j]) {
+                    merged[count++] = that.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_LIMIT ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArrayContainer() : this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] that = ((BitmapContainer) other).words;
+            long[] result = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & that[i];
+                count += Long.bitCount(result[i]);
+            }
+            return shrink(new BitmapContainer(result, count));
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            other.orInto(result);
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, v -> result[v >>> 6] &= ~(1L << v));
+            } else {
+                long[] that = ((BitmapContainer) other).words;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] &= ~that[i];
+                }
+            }
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return shrink(new BitmapContainer(result, count));
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        void orInto(long[] target) {
+            for (int i = 0; i < WORDS; i++) {
+                target[i] |= words[i];
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        private static Container shrink(BitmapContainer bitmap) {
+            return bitmap.cardinality <= ARRAY_LIMIT ? bitmap.toArrayContainer() : bitmap;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] count = {0};
+            forEach(0, v -> values[count[0]++] = (char) v);
+            return new ArrayContainer(values, count[0]);
+        }
+    }
+}
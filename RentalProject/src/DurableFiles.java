@@ -0,0 +1,169 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Crash-safe file writes: whole-file rewrites go to a temp file that is atomically renamed
+// over the target, appends go straight to the file. When data is forced to disk depends on
+// the selected Durability.
+public class DurableFiles {
+
+    public enum Durability {
+        NONE,          // never force, rely on the OS to flush
+        ON_RENAME,     // force a rewritten file before it replaces the old one
+        EVERY_OP,      // force every rewrite and every append
+        GROUP          // force rewrites, force appends once per group of operations
+    }
+
+    public static final int DEFAULT_GROUP_SIZE = 32;
+
+    private Durability durability;
+    private int groupSize;
+    private int pendingOps = 0;
+    private Set<Path> pendingPaths = new LinkedHashSet<>();
+
+    public DurableFiles(Durability durability) {
+        this(durability, DEFAULT_GROUP_SIZE);
+    }
+
+    public DurableFiles(Durability durability, int groupSize) {
+        if (groupSize <= 0) throw new IllegalArgumentException("Group size must be > 0");
+        this.durability = durability;
+        this.groupSize = groupSize;
+    }
+
+    public synchronized Durability getDurability() {
+        return durability;
+    }
+
+    public synchronized void setDurability(Durability durability) throws IOException {
+        sync();
+        this.durability = durability;
+    }
+
+    // Replaces the whole file: the target either keeps its old content or gets all of the new one
+    public void replace(String file, CharSequence content) throws IOException {
+        replace(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void replace(String file, byte[] content) throws IOException {
+        Path target = Paths.get(file).toAbsolutePath();
+        Path dir = target.getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        // A sibling temp file, created like any other data file so it keeps the usual permissions
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, content);
+                if (durability != Durability.NONE) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (durability != Durability.NONE) {
+                forceDirectory(dir);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Appends one line to the file, creating it if needed
+    public void append(String file, CharSequence line) throws IOException {
+        appendLines(file, Collections.singletonList(line));
+    }
+
+    // Appends several lines with a single write, counted as one operation
+    public void appendLines(String file, Collection<? extends CharSequence> lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (CharSequence line : lines) {
+            content.append(line).append(System.lineSeparator());
+        }
+        appendBytes(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Appends raw bytes, counted as one operation
+    public synchronized void appendBytes(String file, byte[] content) throws IOException {
+        Path target = Paths.get(file).toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            writeFully(channel, content);
+            if (durability == Durability.EVERY_OP) {
+                channel.force(false);
+            }
+        }
+        if (durability == Durability.GROUP) {
+            pendingPaths.add(target);
+            if (++pendingOps >= groupSize) {
+                sync();
+            }
+        }
+    }
+
+    // Forces every append still waiting for its group to be flushed
+    public synchronized void sync() throws IOException {
+        for (Path path : pendingPaths) {
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+        }
+        pendingPaths.clear();
+        pendingOps = 0;
+    }
+
+    // Appends not forced yet, for tests
+    synchronized int pendingOps() {
+        return pendingOps;
+    }
+
+    // Removes a directory and everything in it, for temporary data directories
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory, so this is best effort
+    private static void forceDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            // Directory sync is not supported here
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Snapshots of which plates were rented at the end of a day, so a point-in-time query replays only
+// the records dated after the nearest snapshot. A plate is rented at the end of day X if its last
+// record dated X or earlier is a RENT, records of the same day counting in history order. Records
+// are indexed by date, so a rental entered with an earlier date than the records before it, or a
+// compacted rental whose RETURN is loaded away from its RENT, gives the same answer as records
+// in date order.
+//
+// The checkpoint for day D covers every record dated D or earlier. One is taken every interval
+// records for the day before the latest record, whose day may still get more records, and dropped
+// again when a record dated D or earlier arrives. Checkpoints are saved to the storage next to the
+// records, so a restart starts from the stored ones instead of replaying the whole history. A
+// stored checkpoint keeps the number of records it covers and is only used if the loaded records
+// still add up to it, so one that outlived its records in a crash is rebuilt instead.
+class FleetCheckpoints {
+    public static final int DEFAULT_INTERVAL = 1000;
+
+    private final int interval;
+    private NavigableMap<Long, List<RentalRecord>> byDay = new TreeMap<>();
+    private NavigableMap<Long, Checkpoint> checkpoints = new TreeMap<>();
+    private RentalStorage store;
+    private int sinceCheckpoint = 0;
+    private long latestDay = Long.MIN_VALUE;
+
+    // Set while a lazy load is pending: no checkpoints are taken until all records are in, and stored
+    // checkpoints from this day on don't cover the records added meanwhile
+    private boolean loading = false;
+    private long earliestAddedWhileLoading = Long.MAX_VALUE;
+
+    FleetCheckpoints(int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("Checkpoint interval must be > 0");
+        this.interval = interval;
+    }
+
+    void setStore(RentalStorage store) {
+        this.store = store;
+    }
+
+    void startLoading() {
+        loading = true;
+    }
+
+    void apply(RentalRecord record) {
+        long day = index(record);
+        if (loading) {
+            earliestAddedWhileLoading = Math.min(earliestAddedWhileLoading, day);
+            return;
+        }
+        if (!checkpoints.isEmpty() && day <= checkpoints.lastKey()) {
+            drop(day);
+        }
+        sinceCheckpoint++;
+        // Only a record of the latest day, so the checkpoint never includes a record not yet stored
+        if (day == latestDay && sinceCheckpoint >= interval) {
+            catchUp();
+        }
+    }
+
+    // The whole history once it is loaded, with the checkpoints stored alongside it
+    void load(List<RentalRecord> records, SortedMap<LocalDate, Checkpoint> stored) {
+        byDay.clear();
+        checkpoints.clear();
+        latestDay = Long.MIN_VALUE;
+        for (RentalRecord record : records) {
+            index(record);
+        }
+        // Stored checkpoints hold until the first one that is dated too late or doesn't match the records
+        long validBefore = Math.min(earliestAddedWhileLoading, latestDay);
+        Iterator<Map.Entry<Long, List<RentalRecord>>> days = byDay.entrySet().iterator();
+        Map.Entry<Long, List<RentalRecord>> next = days.hasNext() ? days.next() : null;
+        long covered = 0;
+        LocalDate staleFrom = null;
+        for (Map.Entry<LocalDate, Checkpoint> entry : stored.entrySet()) {
+            long day = entry.getKey().toEpochDay();
+            while (next != null && next.getKey() <= day) {
+                covered += next.getValue().size();
+                next = days.hasNext() ? days.next() : null;
+            }
+            if (day >= validBefore || covered != entry.getValue().getRecords()) {
+                staleFrom = entry.getKey();
+                break;
+            }
+            checkpoints.put(day, entry.getValue());
+        }
+        loading = false;
+        earliestAddedWhileLoading = Long.MAX_VALUE;
+        if (staleFrom != null) {
+            dropStored(staleFrom);
+        }
+        catchUp();
+    }
+
+    int size() {
+        return checkpoints.size();
+    }
+
+    // Plates rented at the end of the given day
+    Set<String> rentedPlatesAt(LocalDate date) {
+        long day = date.toEpochDay();
+        Map.Entry<Long, Checkpoint> start = checkpoints.floorEntry(day);
+        Set<String> rented = start == null ? new HashSet<>() : new HashSet<>(start.getValue().getRentedPlates());
+        NavigableMap<Long, List<RentalRecord>> days = start == null
+            ? byDay.headMap(day, true) : byDay.subMap(start.getKey(), false, day, true);
+        for (List<RentalRecord> records : days.values()) {
+            for (RentalRecord record : records) {
+                applyTo(rented, record);
+            }
+        }
+        return rented;
+    }
+
+    private long index(RentalRecord record) {
+        long day = record.getDate().toEpochDay();
+        byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(record);
+        latestDay = Math.max(latestDay, day);
+        return day;
+    }
+
+    // Replays the days between the last checkpoint and the latest day, taking a checkpoint every
+    // interval records and one for the last of those days
+    private void catchUp() {
+        Map.Entry<Long, Checkpoint> last = checkpoints.lastEntry();
+        Set<String> rented = last == null ? new HashSet<>() : new HashSet<>(last.getValue().getRentedPlates());
+        long covered = last == null ? 0 : last.getValue().getRecords();
+        NavigableMap<Long, List<RentalRecord>> days = last == null ? byDay : byDay.tailMap(last.getKey(), false);
+        int count = 0;
+        for (Map.Entry<Long, List<RentalRecord>> entry : days.headMap(latestDay, false).entrySet()) {
+            for (RentalRecord record : entry.getValue()) {
+                applyTo(rented, record);
+            }
+            count += entry.getValue().size();
+            covered += entry.getValue().size();
+            Long next = byDay.higherKey(entry.getKey());
+            if (count >= interval || next == null || next >= latestDay) {
+                save(entry.getKey(), new Checkpoint(covered, rented));
+                count = 0;
+            }
+        }
+        List<RentalRecord> latest = byDay.get(latestDay);
+        sinceCheckpoint = count + (latest == null ? 0 : latest.size());
+    }
+
+    private void save(long day, Checkpoint checkpoint) {
+        checkpoints.put(day, checkpoint);
+        if (store != null) {
+            try {
+                store.saveCheckpoint(LocalDate.ofEpochDay(day), checkpoint);
+            } catch (IOException e) {
+                System.err.println("Error saving fleet checkpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    private void drop(long fromDay) {
+        checkpoints.tailMap(fromDay, true).clear();
+        dropStored(LocalDate.ofEpochDay(fromDay));
+    }
+
+    private void dropStored(LocalDate from) {
+        if (store != null) {
+            try {
+                store.dropCheckpoints(from);
+            } catch (IOException e) {
+                System.err.println("Error dropping fleet checkpoints: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void applyTo(Set<String> rented, RentalRecord record) {
+        String plate = record.getVehicle().getLicensePlate();
+        if ("RENT".equals(record.getTransactionType())) {
+            rented.add(plate);
+        } else if ("RETURN".equals(record.getTransactionType())) {
+            rented.remove(plate);
+        }
+    }
+
+    // Lines of the checkpoint file of the file backends: day,records,plateCount,PLATE;PLATE
+    static String format(LocalDate day, Checkpoint checkpoint) {
+        return day + "," + checkpoint.getRecords() + "," + checkpoint.getRentedPlates().size() + ","
+            + String.join(";", new TreeSet<>(checkpoint.getRentedPlates()));
+    }
+
+    // Reads a checkpoint file; a line torn by a crash doesn't add up and is skipped
+    static SortedMap<LocalDate, Checkpoint> read(String file) throws IOException {
+        SortedMap<LocalDate, Checkpoint> checkpoints = new TreeMap<>();
+        if (!Files.exists(Paths.get(file))) {
+            return checkpoints;
+        }
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String[] parts = line.split(",", -1);
+            try {
+                Set<String> plates = new HashSet<>();
+                if (parts.length == 4 && !parts[3].isEmpty()) {
+                    plates.addAll(Arrays.asList(parts[3].split(";")));
+                }
+                if (parts.length == 4 && plates.size() == Integer.parseInt(parts[2])) {
+                    checkpoints.put(LocalDate.parse(parts[0]), new Checkpoint(Long.parseLong(parts[1]), plates));
+                }
+            }
+            catch (DateTimeParseException | NumberFormatException e) {
+                // torn line
+            }
+        }
+        return checkpoints;
+    }
+
+    // Keeps the lines of a checkpoint file dated before from
+    static void dropFrom(String file, LocalDate from, DurableFiles files) throws IOException {
+        if (!Files.exists(Paths.get(file))) {
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<LocalDate, Checkpoint> entry : read(file).headMap(from).entrySet()) {
+            content.append(format(entry.getKey(), entry.getValue())).append(System.lineSeparator());
+        }
+        files.replace(file, content);
+    }
+
+    // The fleet at the end of a day and the number of records dated that day or earlier
+    static class Checkpoint {
+        private final long records;
+        private final Set<String> rentedPlates;
+
+        Checkpoint(long records, Set<String> rentedPlates) {
+            this.records = records;
+            this.rentedPlates = Collections.unmodifiableSet(new HashSet<>(rentedPlates));
+        }
+
+        long getRecords() {
+            return records;
+        }
+
+        Set<String> getRentedPlates() {
+            return rentedPlates;
+        }
+    }
+}
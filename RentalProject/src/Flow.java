@@ -0,0 +1,32 @@
+// The interfaces of java.util.concurrent.Flow, which only exists from Java 9 on. The project
+// targets Java 8; on a newer JDK this file can be deleted and java.util.concurrent.Flow imported
+// instead, the signatures and the rules for calling them are the same.
+public final class Flow {
+
+    private Flow() {
+    }
+
+    @FunctionalInterface
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        void request(long n);
+
+        void cancel();
+    }
+
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
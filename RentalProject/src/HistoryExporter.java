@@ -0,0 +1,249 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Streams rental history to CSV or JSON without building the export in memory.
+// The history is read in fixed-size chunks of record references, each record is formatted into
+// one reused character buffer, and the buffer is handed to the (optionally gzipped) stream
+// whenever it fills, so memory stays flat however many records are exported.
+public class HistoryExporter {
+    public enum Format { CSV, JSON }
+
+    private static final int READ_CHUNK = 8192;
+    private static final int BUFFER_CHARS = 1 << 16;
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    private RentalHistory history;
+
+    public HistoryExporter(RentalHistory history) {
+        this.history = history;
+    }
+
+    // Writes the records dated between from and to (inclusive, null for open-ended) and returns how
+    // many were written. The stream is flushed, and gzip finished, but not closed.
+    public long export(OutputStream out, Format format, LocalDate from, LocalDate to, boolean gzip) throws IOException {
+        GZIPOutputStream zip = gzip ? fastGzip(out) : null;
+        OutputStream target = zip != null ? zip : new BufferedOutputStream(out, STREAM_BUFFER);
+        Writer writer = new OutputStreamWriter(target, StandardCharsets.UTF_8);
+        Sink sink = new Sink(writer);
+
+        long fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        long toDay = to == null ? Long.MAX_VALUE : to.toEpochDay();
+        long written = 0;
+
+        if (format == Format.CSV) {
+            sink.buf.append("type,plate,customer_id,customer_name,date,amount,due_date\n");
+        } else {
+            sink.buf.append('[');
+        }
+        int size = history.size();
+        for (int i = 0; i < size; i += READ_CHUNK) {
+            for (RentalRecord record : history.getRecords(i, i + READ_CHUNK)) {
+                long day = record.getDate().toEpochDay();
+                if (day < fromDay || day > toDay) {
+                    continue;
+                }
+                if (format == Format.CSV) {
+                    appendCsv(sink.buf, record);
+                } else {
+                    if (written > 0) {
+                        sink.buf.append(',');
+                    }
+                    appendJson(sink.buf, record);
+                }
+                written++;
+                sink.drainIfFull();
+            }
+        }
+        if (format == Format.JSON) {
+            sink.buf.append("]\n");
+        }
+        sink.drain();
+        writer.flush();
+        if (zip != null) {
+            zip.finish();
+        }
+        out.flush();
+        return written;
+    }
+
+    // Exports are written once and rarely read, so trade a little size for speed: at the default
+    // level deflate, not the disk, is the bottleneck
+    private static GZIPOutputStream fastGzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, STREAM_BUFFER) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    // Exports to a file, gzipped when the name ends in .gz
+    public long export(String file, Format format, LocalDate from, LocalDate to) throws IOException {
+        try (OutputStream out = Files.newOutputStream(Paths.get(file))) {
+            return export(out, format, from, to, file.endsWith(".gz"));
+        }
+    }
+
+    static void appendCsv(StringBuilder sb, RentalRecord record) {
+        sb.append(record.getTransactionType()).append(',');
+        appendCsvField(sb, record.getVehicle().getLicensePlate());
+        sb.append(',');
+        appendCsvField(sb, record.getCustomer().getCustomerId());
+        sb.append(',');
+        appendCsvField(sb, record.getCustomer().getCustomerName());
+        sb.append(',');
+        appendDate(sb, record.getDate());
+        sb.append(',');
+        appendAmount(sb, record.getAmount());
+        sb.append(',');
+        if (record.getDueDate() != null) {
+            appendDate(sb, record.getDueDate());
+        }
+        sb.append('\n');
+    }
+
+    static void appendJson(StringBuilder sb, RentalRecord record) {
+        sb.append("\n{\"type\":");
+        appendJsonString(sb, record.getTransactionType());
+        sb.append(",\"plate\":");
+        appendJsonString(sb, record.getVehicle().getLicensePlate());
+        sb.append(",\"customerId\":");
+        appendJsonString(sb, record.getCustomer().getCustomerId());
+        sb.append(",\"customerName\":");
+        appendJsonString(sb, record.getCustomer().getCustomerName());
+        sb.append(",\"date\":\"");
+        appendDate(sb, record.getDate());
+        sb.append("\",\"amount\":");
+        appendAmount(sb, record.getAmount());
+        if (record.getDueDate() != null) {
+            sb.append(",\"dueDate\":\"");
+            appendDate(sb, record.getDueDate());
+            sb.append('"');
+        }
+        sb.append('}');
+    }
+
+    // Quoted only when it has to be, with embedded quotes doubled
+    private static void appendCsvField(StringBuilder sb, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // yyyy-MM-dd without going through LocalDate.toString()
+    private static void appendDate(StringBuilder sb, LocalDate date) {
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            sb.append(date);
+            return;
+        }
+        sb.append(year).append('-');
+        appendTwoDigits(sb, date.getMonthValue());
+        sb.append('-');
+        appendTwoDigits(sb, date.getDayOfMonth());
+    }
+
+    // Amounts are money: rounded to cents and always printed with two decimals
+    private static void appendAmount(StringBuilder sb, double amount) {
+        long cents = Math.round(amount * 100);
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        sb.append(cents / 100).append('.');
+        appendTwoDigits(sb, (int) (cents % 100));
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    // Formatting target that is emptied into the writer through one reused char array
+    private static class Sink {
+        private final Writer writer;
+        private final StringBuilder buf = new StringBuilder(BUFFER_CHARS + 1024);
+        private char[] chars = new char[BUFFER_CHARS + 1024];
+
+        Sink(Writer writer) {
+            this.writer = writer;
+        }
+
+        void drainIfFull() throws IOException {
+            if (buf.length() >= BUFFER_CHARS) {
+                drain();
+            }
+        }
+
+        void drain() throws IOException {
+            int length = buf.length();
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            buf.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+            buf.setLength(0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: HistoryExporter <csv|json> <outputFile[.gz]> [fromDate] [toDate]");
+            return;
+        }
+        Format format = Format.valueOf(args[0].toUpperCase());
+        LocalDate from = args.length > 2 ? LocalDate.parse(args[2]) : null;
+        LocalDate to = args.length > 3 ? LocalDate.parse(args[3]) : null;
+        // Same storage as the application, closed again once the export is written
+        try (RentalSystem rentalSystem = RentalSystem.builder().storage(RentalStorage.fromSystemProperties()).build()) {
+            rentalSystem.awaitHistory();
+            long start = System.nanoTime();
+            long count = new HistoryExporter(rentalSystem.getRentalHistory()).export(args[1], format, from, to);
+            System.out.println("Exported " + count + " records to " + args[1] + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+}
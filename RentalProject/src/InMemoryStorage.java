@@ -0,0 +1,91 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Keeps everything on the heap and nothing on disk: for replicas, tests and simulations.
+// The saved objects are the live ones, so a status change needs no write.
+public class InMemoryStorage implements RentalStorage {
+    private List<Vehicle> vehicles = new ArrayList<>();
+    private List<Customer> customers = new ArrayList<>();
+    private List<RentalRecord> records = new ArrayList<>();
+    private SortedMap<LocalDate, FleetCheckpoints.Checkpoint> checkpoints = new TreeMap<>();
+    private Map<String, MaintenanceScheduler.ServicePoint> servicePoints = new HashMap<>();
+
+    @Override
+    public synchronized List<Vehicle> loadVehicles() {
+        return new ArrayList<>(vehicles);
+    }
+
+    @Override
+    public synchronized List<Customer> loadCustomers() {
+        return new ArrayList<>(customers);
+    }
+
+    @Override
+    public synchronized long recordsMark() {
+        return records.size();
+    }
+
+    @Override
+    public synchronized List<RentalRecord> loadRecords(Map<String, Vehicle> vehiclesByPlate, Map<String, Customer> customersById, long mark) {
+        List<RentalRecord> loaded = new ArrayList<>();
+        for (RentalRecord record : records.subList(0, (int) Math.min(mark, records.size()))) {
+            Vehicle vehicle = vehiclesByPlate.get(record.getVehicle().getLicensePlate().toUpperCase());
+            Customer customer = customersById.get(record.getCustomer().getCustomerId());
+            if (vehicle != null && customer != null) {
+                loaded.add(new RentalRecord(vehicle, customer, record.getDate(), record.getAmount(),
+                    record.getTransactionType(), record.getDueDate()));
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized void saveVehicles(Collection<? extends Vehicle> newVehicles) {
+        vehicles.addAll(newVehicles);
+    }
+
+    @Override
+    public void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) {
+    }
+
+    @Override
+    public synchronized void saveCustomers(Collection<? extends Customer> newCustomers) {
+        customers.addAll(newCustomers);
+    }
+
+    @Override
+    public synchronized void saveRecord(RentalRecord record) {
+        records.add(record);
+    }
+
+    @Override
+    public synchronized SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() {
+        return new TreeMap<>(checkpoints);
+    }
+
+    @Override
+    public synchronized void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) {
+        checkpoints.put(day, checkpoint);
+    }
+
+    @Override
+    public synchronized void dropCheckpoints(LocalDate from) {
+        checkpoints.tailMap(from).clear();
+    }
+
+    @Override
+    public synchronized Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() {
+        return new HashMap<>(servicePoints);
+    }
+
+    @Override
+    public synchronized void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) {
+        servicePoints.put(plate, point);
+    }
+}
@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Stores everything in an embedded, in-process SQL database reached through plain JDBC, e.g.
+// jdbc:h2:./src/rental or jdbc:derby:src/rental;create=true. The driver jar must be on the classpath.
+// Only portable SQL is used; the tables are created on first use.
+public class JdbcStorage implements RentalStorage {
+    private Connection connection;
+    private long nextRecordId;
+
+    public JdbcStorage(String url) throws IOException {
+        try {
+            connection = DriverManager.getConnection(url);
+            createTables();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM rental_records")) {
+                nextRecordId = rs.next() ? rs.getLong(1) + 1 : 1;
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException("Cannot open database " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void createTables() throws SQLException {
+        Set<String> existing = new HashSet<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, null, "%", new String[] { "TABLE" })) {
+            while (rs.next()) {
+                existing.add(rs.getString("TABLE_NAME").toLowerCase());
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (!existing.contains("vehicles")) {
+                statement.executeUpdate("CREATE TABLE vehicles (plate VARCHAR(16) PRIMARY KEY, type VARCHAR(32), " +
+                    "make VARCHAR(64), model VARCHAR(64), year_made INTEGER, status VARCHAR(16), extra VARCHAR(32))");
+            }
+            if (!existing.contains("customers")) {
+                statement.executeUpdate("CREATE TABLE customers (id VARCHAR(64) PRIMARY KEY, name VARCHAR(128))");
+            }
+            if (!existing.contains("rental_records")) {
+                statement.executeUpdate("CREATE TABLE rental_records (id BIGINT PRIMARY KEY, plate VARCHAR(16), " +
+                    "customer_id VARCHAR(64), record_date VARCHAR(10), amount DOUBLE PRECISION, type VARCHAR(16), " +
+                    "due_date VARCHAR(10))");
+            }
+            else if (!hasColumn(metaData, "rental_records", "due_date")) {
+                statement.executeUpdate("ALTER TABLE rental_records ADD COLUMN due_date VARCHAR(10)");
+            }
+            if (!existing.contains("rental_records_archive")) {
+                statement.executeUpdate("CREATE TABLE rental_records_archive (id BIGINT PRIMARY KEY, plate VARCHAR(16), " +
+                    "customer_id VARCHAR(64), record_date VARCHAR(10), amount DOUBLE PRECISION, type VARCHAR(16), " +
+                    "due_date VARCHAR(10))");
+            }
+            if (!existing.contains("fleet_checkpoints")) {
+                statement.executeUpdate("CREATE TABLE fleet_checkpoints (checkpoint_date VARCHAR(10) PRIMARY KEY, record_count BIGINT, plates CLOB)");
+            }
+            if (!existing.contains("service_points")) {
+                statement.executeUpdate("CREATE TABLE service_points (plate VARCHAR(16) PRIMARY KEY, rentals INTEGER, rented_days BIGINT)");
+            }
+        }
+    }
+
+    // Tables created before due dates existed get the column added
+    private static boolean hasColumn(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        for (String name : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet rs = metaData.getColumns(null, null, name, "%")) {
+                while (rs.next()) {
+                    if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized List<Vehicle> loadVehicles() throws IOException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT type, plate, make, model, year_made, status, extra FROM vehicles")) {
+            while (rs.next()) {
+                String line = rs.getString(1) + "," + rs.getString(2) + "," + rs.getString(3) + "," + rs.getString(4) +
+                    "," + rs.getInt(5) + "," + rs.getString(6) + "," + rs.getString(7);
+                try {
+                    vehicles.add(VehicleCodecs.decode(line));
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println("Vehicle not added from loadVehicles() method.");
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return vehicles;
+    }
+
+    @Override
+    public synchronized List<Customer> loadCustomers() throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, name FROM customers")) {
+            while (rs.next()) {
+                customers.add(new Customer(rs.getString(1), rs.getString(2)));
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return customers;
+    }
+
+    @Override
+    public synchronized long recordsMark() {
+        return nextRecordId;
+    }
+
+    // A SUMMARY row (see compactRecords) is loaded as a RENT and a RETURN
+    @Override
+    public synchronized List<RentalRecord> loadRecords(Map<String, Vehicle> vehicleIndex, Map<String, Customer> customerIndex, long mark) throws IOException {
+        RecordCompactor.Replay records = new RecordCompactor.Replay();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT plate, customer_id, record_date, amount, type, due_date FROM rental_records WHERE id < ? ORDER BY id")) {
+            statement.setLong(1, mark);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Vehicle vehicle = vehicleIndex.get(rs.getString(1));
+                    Customer customer = customerIndex.get(rs.getString(2));
+                    if (vehicle == null || customer == null) {
+                        continue;
+                    }
+                    String dueDate = rs.getString(6);
+                    if (RecordCompactor.SUMMARY.equals(rs.getString(5))) {
+                        records.addSummary(vehicle, customer, LocalDate.parse(rs.getString(3)),
+                            LocalDate.parse(dueDate), rs.getDouble(4));
+                    } else {
+                        records.add(new RentalRecord(vehicle, customer, LocalDate.parse(rs.getString(3)),
+                            rs.getDouble(4), rs.getString(5), dueDate == null ? null : LocalDate.parse(dueDate)));
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return records.finish();
+    }
+
+    @Override
+    public synchronized void saveVehicles(Collection<? extends Vehicle> newVehicles) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO vehicles (type, plate, make, model, year_made, status, extra) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (Vehicle vehicle : newVehicles) {
+                // extra holds the type-specific fields, comma-separated as in vehicles.txt
+                String[] parts = VehicleCodecs.encode(vehicle).split(",", 7);
+                statement.setString(1, parts[0]);
+                statement.setString(2, parts[1]);
+                statement.setString(3, parts[2]);
+                statement.setString(4, parts[3]);
+                statement.setInt(5, vehicle.getYear());
+                statement.setString(6, parts[5]);
+                statement.setString(7, parts.length > 6 ? parts[6] : null);
+                statement.addBatch();
+            }
+            executeInTransaction(statement);
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // A single-row update, the rest of the fleet is untouched
+    @Override
+    public synchronized void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE vehicles SET status = ? WHERE plate = ?")) {
+            statement.setString(1, vehicle.getStatus().name());
+            statement.setString(2, vehicle.getLicensePlate());
+            statement.executeUpdate();
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void saveCustomers(Collection<? extends Customer> newCustomers) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO customers (id, name) VALUES (?, ?)")) {
+            for (Customer customer : newCustomers) {
+                statement.setString(1, customer.getCustomerId());
+                statement.setString(2, customer.getCustomerName());
+                statement.addBatch();
+            }
+            executeInTransaction(statement);
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void saveRecord(RentalRecord record) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO rental_records (id, plate, customer_id, record_date, amount, type, due_date) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setLong(1, nextRecordId);
+            statement.setString(2, record.getVehicle().getLicensePlate());
+            statement.setString(3, record.getCustomer().getCustomerId());
+            statement.setString(4, record.getDate().toString());
+            statement.setDouble(5, record.getAmount());
+            statement.setString(6, record.getTransactionType());
+            if (record.getDueDate() == null) {
+                statement.setNull(7, Types.VARCHAR);
+            } else {
+                statement.setString(7, record.getDueDate().toString());
+            }
+            statement.executeUpdate();
+            nextRecordId++;
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Compacted rentals become a SUMMARY row in place of the RENT row, with the total in amount and the
+    // end date in due_date; the RETURN row is deleted. Archived rows are copied to rental_records_archive.
+    // Everything happens in one transaction.
+    @Override
+    public synchronized RecordCompactor.Result compactRecords(LocalDate cutoff, boolean archive) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<RecordCompactor.Entry> entries = new ArrayList<>();
+        try {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT id, plate, customer_id, record_date, amount, type, due_date FROM rental_records ORDER BY id")) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    String dueDate = rs.getString(7);
+                    entries.add(new RecordCompactor.Entry(rs.getString(2), rs.getString(3), LocalDate.parse(rs.getString(4)),
+                        rs.getDouble(5), rs.getString(6), dueDate == null ? null : LocalDate.parse(dueDate)));
+                }
+            }
+            List<Integer> folded = RecordCompactor.fold(entries, cutoff);
+            if (folded.isEmpty()) {
+                return new RecordCompactor.Result(entries.size(), entries.size(), 0);
+            }
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement copy = connection.prepareStatement(
+                     "INSERT INTO rental_records_archive SELECT * FROM rental_records WHERE id = ?");
+                 PreparedStatement summarize = connection.prepareStatement(
+                     "UPDATE rental_records SET type = ?, amount = ?, due_date = ? WHERE id = ?");
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM rental_records WHERE id = ?")) {
+                for (int i = 0; i < folded.size(); i += 2) {
+                    long rentId = ids.get(folded.get(i));
+                    long returnId = ids.get(folded.get(i + 1));
+                    RecordCompactor.Entry summary = entries.get(folded.get(i));
+                    if (archive) {
+                        copy.setLong(1, rentId);
+                        copy.addBatch();
+                        copy.setLong(1, returnId);
+                        copy.addBatch();
+                    }
+                    summarize.setString(1, RecordCompactor.SUMMARY);
+                    summarize.setDouble(2, summary.amount);
+                    summarize.setString(3, summary.end.toString());
+                    summarize.setLong(4, rentId);
+                    summarize.addBatch();
+                    delete.setLong(1, returnId);
+                    delete.addBatch();
+                }
+                if (archive) {
+                    copy.executeBatch();
+                }
+                summarize.executeBatch();
+                delete.executeBatch();
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(true);
+            }
+            return new RecordCompactor.Result(entries.size(), entries.size() - folded.size() / 2, folded.size() / 2);
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() throws IOException {
+        SortedMap<LocalDate, FleetCheckpoints.Checkpoint> checkpoints = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT checkpoint_date, record_count, plates FROM fleet_checkpoints")) {
+            while (rs.next()) {
+                String plates = rs.getString(3);
+                checkpoints.put(LocalDate.parse(rs.getString(1)), new FleetCheckpoints.Checkpoint(rs.getLong(2),
+                    plates.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(plates.split(";")))));
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return checkpoints;
+    }
+
+    @Override
+    public synchronized void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO fleet_checkpoints (checkpoint_date, record_count, plates) VALUES (?, ?, ?)")) {
+            statement.setString(1, day.toString());
+            statement.setLong(2, checkpoint.getRecords());
+            statement.setString(3, String.join(";", checkpoint.getRentedPlates()));
+            statement.executeUpdate();
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Dates are stored as ISO strings, which compare in date order
+    @Override
+    public synchronized void dropCheckpoints(LocalDate from) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM fleet_checkpoints WHERE checkpoint_date >= ?")) {
+            statement.setString(1, from.toString());
+            statement.executeUpdate();
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() throws IOException {
+        Map<String, MaintenanceScheduler.ServicePoint> points = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT plate, rentals, rented_days FROM service_points")) {
+            while (rs.next()) {
+                points.put(rs.getString(1), new MaintenanceScheduler.ServicePoint(rs.getInt(2), rs.getLong(3)));
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return points;
+    }
+
+    // Replaces the plate's row in one transaction
+    @Override
+    public synchronized void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) throws IOException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM service_points WHERE plate = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO service_points (plate, rentals, rented_days) VALUES (?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            try {
+                delete.setString(1, plate);
+                delete.executeUpdate();
+                insert.setString(1, plate);
+                insert.setInt(2, point.getRentals());
+                insert.setLong(3, point.getRentedDays());
+                insert.executeUpdate();
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void executeInTransaction(PreparedStatement statement) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            statement.executeBatch();
+            connection.commit();
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Stops reading after a fixed number of bytes, so a loader ignores data appended after it was created
+class LimitedInputStream extends FilterInputStream {
+    private final long limit;
+    private long remaining;
+
+    LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+        this.remaining = limit;
+    }
+
+    // Bytes read so far
+    long getPosition() {
+        return limit - remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) return -1;
+        int b = super.read();
+        if (b >= 0) remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) return -1;
+        int n = super.read(buffer, offset, (int) Math.min(length, remaining));
+        if (n > 0) remaining -= n;
+        return n;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Decides which vehicles are due for service from their usage since the last service.
+// Urgency is the larger of rentals / rentalInterval and rented days / dayInterval counted since
+// then, so 1.0 means due. It is recomputed from VehicleUsage for the one vehicle a rent or return
+// touched, and the available vehicles are kept in a TreeSet by urgency, most urgent first: taking
+// the k most urgent is O(k log n) and never looks at the history or the rest of the fleet.
+// The usage at each vehicle's last service is stored by RentalSystem.completeMaintenance (see
+// RentalStorage.saveServicePoint) and read back at start-up; a vehicle that was never serviced
+// counts all of its usage.
+public class MaintenanceScheduler implements RentalListener {
+    public static final int DEFAULT_RENTAL_INTERVAL = 20;
+    public static final int DEFAULT_DAY_INTERVAL = 60;
+    // Vehicles this far past their interval go OUTOFSERVICE instead of MAINTENANCE
+    public static final double OUT_OF_SERVICE_URGENCY = 2.0;
+
+    private static final Comparator<Entry> MOST_URGENT = Comparator.<Entry>comparingDouble(e -> -e.urgency)
+        .thenComparing(e -> e.vehicle.getLicensePlate());
+
+    private final VehicleUsage usage;
+    private final int rentalInterval;
+    private final int dayInterval;
+    private final Map<String, ServicePoint> servicePoints;
+    private Map<String, Entry> entries = new HashMap<>();
+    private TreeSet<Entry> available = new TreeSet<>(MOST_URGENT);
+
+    // usage has to see a record before this scheduler does, RentalSystem registers it first.
+    // servicePoints are the stored ones by plate.
+    MaintenanceScheduler(VehicleUsage usage, int rentalInterval, int dayInterval, Map<String, ServicePoint> servicePoints) {
+        if (rentalInterval <= 0 || dayInterval <= 0) {
+            throw new IllegalArgumentException("Service intervals must be positive");
+        }
+        this.usage = usage;
+        this.rentalInterval = rentalInterval;
+        this.dayInterval = dayInterval;
+        this.servicePoints = new HashMap<>(servicePoints);
+    }
+
+    public synchronized void add(Vehicle vehicle) {
+        if (entries.containsKey(vehicle.getLicensePlate())) {
+            return;
+        }
+        VehicleUsage.Counters counters = usage.get(vehicle.getLicensePlate());
+        ServicePoint point = servicePoints.get(vehicle.getLicensePlate());
+        Entry entry = new Entry(vehicle);
+        if (point != null) {
+            entry.serviceRentals = point.getRentals();
+            entry.serviceDays = point.getRentedDays();
+        }
+        entry.urgency = urgency(entry, counters);
+        entries.put(vehicle.getLicensePlate(), entry);
+        if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
+            available.add(entry);
+        }
+    }
+
+    // Up to max available vehicles that are due, most urgent first
+    public synchronized List<Vehicle> nextDue(int max) {
+        List<Vehicle> due = new ArrayList<>();
+        for (Entry entry : available) {
+            if (due.size() >= max || entry.urgency < 1.0) {
+                break;
+            }
+            due.add(entry.vehicle);
+        }
+        return due;
+    }
+
+    public synchronized double getUrgency(Vehicle vehicle) {
+        Entry entry = entries.get(vehicle.getLicensePlate());
+        return entry == null ? 0.0 : entry.urgency;
+    }
+
+    @Override
+    public void vehicleAdded(Vehicle vehicle) {
+        add(vehicle);
+    }
+
+    @Override
+    public synchronized void recordAdded(RentalRecord record) {
+        Entry entry = entries.get(record.getVehicle().getLicensePlate());
+        if (entry != null) {
+            update(entry, urgency(entry, usage.get(entry.vehicle.getLicensePlate())));
+        }
+    }
+
+    @Override
+    public synchronized void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+        Entry entry = entries.get(vehicle.getLicensePlate());
+        if (entry == null) {
+            return;
+        }
+        available.remove(entry);
+        if ((oldStatus == Vehicle.VehicleStatus.MAINTENANCE || oldStatus == Vehicle.VehicleStatus.OUTOFSERVICE)
+                && vehicle.getStatus() != Vehicle.VehicleStatus.MAINTENANCE
+                && vehicle.getStatus() != Vehicle.VehicleStatus.OUTOFSERVICE) {
+            // Back from service: count from here
+            VehicleUsage.Counters counters = usage.get(vehicle.getLicensePlate());
+            entry.serviceRentals = counters.getRentals();
+            entry.serviceDays = counters.getRentedDays();
+            entry.urgency = 0.0;
+        }
+        if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
+            available.add(entry);
+        }
+    }
+
+    private void update(Entry entry, double urgency) {
+        if (entry.urgency == urgency) {
+            return;
+        }
+        boolean queued = available.remove(entry);
+        entry.urgency = urgency;
+        if (queued) {
+            available.add(entry);
+        }
+    }
+
+    private double urgency(Entry entry, VehicleUsage.Counters counters) {
+        return Math.max((double) (counters.getRentals() - entry.serviceRentals) / rentalInterval,
+            (double) (counters.getRentedDays() - entry.serviceDays) / dayInterval);
+    }
+
+    // Lines of the service point file of the file backends: plate,rentals,rentedDays. The file is
+    // only appended to, so the last line of a plate wins.
+    static String format(String plate, ServicePoint point) {
+        return plate + "," + point.getRentals() + "," + point.getRentedDays();
+    }
+
+    // A last line without its line break was torn by a crash and is left out
+    static Map<String, ServicePoint> readServicePoints(String file) throws IOException {
+        Map<String, ServicePoint> points = new HashMap<>();
+        if (!Files.exists(Paths.get(file))) {
+            return points;
+        }
+        String content = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\\R")) {
+            String[] parts = line.split(",");
+            try {
+                if (parts.length == 3) {
+                    points.put(parts[0], new ServicePoint(Integer.parseInt(parts[1]), Long.parseLong(parts[2])));
+                }
+            }
+            catch (NumberFormatException e) {
+                // damaged line
+            }
+        }
+        return points;
+    }
+
+    // A vehicle's usage counters when it came back from its last service
+    static class ServicePoint {
+        private final int rentals;
+        private final long rentedDays;
+
+        ServicePoint(int rentals, long rentedDays) {
+            this.rentals = rentals;
+            this.rentedDays = rentedDays;
+        }
+
+        int getRentals() {
+            return rentals;
+        }
+
+        long getRentedDays() {
+            return rentedDays;
+        }
+    }
+
+    private static class Entry {
+        private final Vehicle vehicle;
+        private int serviceRentals;
+        private long serviceDays;
+        private double urgency;
+
+        Entry(Vehicle vehicle) {
+            this.vehicle = vehicle;
+        }
+    }
+}
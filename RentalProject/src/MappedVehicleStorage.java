@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Keeps the fleet in vehicles.dat, a fixed-width table accessed through a MappedByteBuffer.
+// Every vehicle owns a slot at a known offset, so a status change flips one byte in place
+// instead of rewriting the fleet. The table lives off-heap in the OS page cache; start-up
+// maps the file and walks the slots. Customers and records are delegated to another backend.
+//
+// Header (64 bytes): magic, version, slot size, slot count.
+// Slot (128 bytes): type, status, year, plate, make, model, type-specific extra written by the type's codec.
+public class MappedVehicleStorage implements RentalStorage {
+    private static final int MAGIC = 0x56454831; // "VEH1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 128;
+    private static final int INITIAL_SLOTS = 1024;
+
+    private static final int TYPE = 0;
+    private static final int STATUS = 1;
+    private static final int YEAR = 4;
+    private static final int PLATE = 8;
+    private static final int PLATE_LENGTH = 8;
+    private static final int MAKE = 16;
+    private static final int MODEL = 56;
+    private static final int TEXT_LENGTH = 40;
+    private static final int EXTRA = 96;
+
+    private FileChannel channel;
+    private MappedByteBuffer table;
+    private ByteBuffer extraView;
+    private int slotCount;
+    private Map<String, Integer> slotsByPlate = new HashMap<>();
+    private DurableFiles.Durability durability = DurableFiles.Durability.ON_RENAME;
+    private RentalStorage delegate;
+
+    public MappedVehicleStorage(String directory, RentalStorage delegate) throws IOException {
+        this.delegate = delegate;
+        Path file = Paths.get(directory, "vehicles.dat");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() < HEADER_SIZE;
+        map(created ? INITIAL_SLOTS : (int) ((channel.size() - HEADER_SIZE) / SLOT_SIZE));
+        if (created) {
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            table.putInt(8, SLOT_SIZE);
+            table.putInt(12, 0);
+        }
+        else if (table.getInt(0) != MAGIC || table.getInt(8) != SLOT_SIZE) {
+            throw new IOException("Not a vehicle table: " + file);
+        }
+    }
+
+    private void map(int slots) throws IOException {
+        table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+        extraView = table.duplicate();
+        slotCount = slots;
+    }
+
+    private int usedSlots() {
+        return table.getInt(12);
+    }
+
+    @Override
+    public synchronized List<Vehicle> loadVehicles() throws IOException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        slotsByPlate.clear();
+        if (usedSlots() == 0) {
+            // First start on this table: take over the fleet the other backend already has
+            vehicles.addAll(delegate.loadVehicles());
+            saveVehicles(vehicles);
+            return vehicles;
+        }
+        for (int slot = 0; slot < usedSlots(); slot++) {
+            try {
+                Vehicle vehicle = readSlot(HEADER_SIZE + slot * SLOT_SIZE);
+                slotsByPlate.put(vehicle.getLicensePlate(), slot);
+                vehicles.add(vehicle);
+            }
+            catch (IllegalArgumentException e) {
+                System.out.println("Vehicle not added from loadVehicles() method.");
+            }
+        }
+        return vehicles;
+    }
+
+    @Override
+    public synchronized void saveVehicles(Collection<? extends Vehicle> newVehicles) throws IOException {
+        for (Vehicle vehicle : newVehicles) {
+            int slot = usedSlots();
+            if (slot == slotCount) {
+                table.force();
+                map(slotCount * 2);
+            }
+            writeSlot(HEADER_SIZE + slot * SLOT_SIZE, vehicle);
+            slotsByPlate.put(vehicle.getLicensePlate(), slot);
+            table.putInt(12, slot + 1);
+        }
+        if (durability != DurableFiles.Durability.NONE) {
+            table.force();
+        }
+    }
+
+    // O(1): one byte at the vehicle's slot
+    @Override
+    public synchronized void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) throws IOException {
+        putStatus(vehicle);
+        if (durability == DurableFiles.Durability.EVERY_OP) {
+            table.force();
+        }
+    }
+
+    @Override
+    public synchronized void saveVehicleStatuses(Collection<Vehicle> changed, Collection<Vehicle> fleet) throws IOException {
+        for (Vehicle vehicle : changed) {
+            putStatus(vehicle);
+        }
+        if (durability == DurableFiles.Durability.EVERY_OP) {
+            table.force();
+        }
+    }
+
+    private void putStatus(Vehicle vehicle) throws IOException {
+        Integer slot = slotsByPlate.get(vehicle.getLicensePlate());
+        if (slot == null) {
+            throw new IOException("Vehicle " + vehicle.getLicensePlate() + " has no slot in the vehicle table.");
+        }
+        table.put(HEADER_SIZE + slot * SLOT_SIZE + STATUS, (byte) vehicle.getStatus().ordinal());
+    }
+
+    @Override
+    public List<Customer> loadCustomers() throws IOException {
+        return delegate.loadCustomers();
+    }
+
+    @Override
+    public long recordsMark() throws IOException {
+        return delegate.recordsMark();
+    }
+
+    @Override
+    public List<RentalRecord> loadRecords(Map<String, Vehicle> vehiclesByPlate, Map<String, Customer> customersById, long mark) throws IOException {
+        return delegate.loadRecords(vehiclesByPlate, customersById, mark);
+    }
+
+    @Override
+    public void saveCustomers(Collection<? extends Customer> newCustomers) throws IOException {
+        delegate.saveCustomers(newCustomers);
+    }
+
+    @Override
+    public void saveRecord(RentalRecord record) throws IOException {
+        delegate.saveRecord(record);
+    }
+
+    @Override
+    public RecordCompactor.Result compactRecords(LocalDate cutoff, boolean archive) throws IOException {
+        return delegate.compactRecords(cutoff, archive);
+    }
+
+    @Override
+    public SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() throws IOException {
+        return delegate.loadCheckpoints();
+    }
+
+    @Override
+    public void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) throws IOException {
+        delegate.saveCheckpoint(day, checkpoint);
+    }
+
+    @Override
+    public void dropCheckpoints(LocalDate from) throws IOException {
+        delegate.dropCheckpoints(from);
+    }
+
+    @Override
+    public Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() throws IOException {
+        return delegate.loadServicePoints();
+    }
+
+    @Override
+    public void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) throws IOException {
+        delegate.saveServicePoint(plate, point);
+    }
+
+    @Override
+    public synchronized DurableFiles.Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public synchronized void setDurability(DurableFiles.Durability durability) throws IOException {
+        table.force();
+        this.durability = durability;
+        delegate.setDurability(durability);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        table.force();
+        channel.close();
+        delegate.close();
+    }
+
+    private void writeSlot(int offset, Vehicle v) throws IOException {
+        VehicleCodec<?> codec;
+        try {
+            codec = VehicleCodecs.forVehicle(v);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        table.put(offset + TYPE, codec.getTypeId());
+        table.put(offset + STATUS, (byte) v.getStatus().ordinal());
+        table.putInt(offset + YEAR, v.getYear());
+        putText(offset + PLATE, PLATE_LENGTH, v.getLicensePlate());
+        putText(offset + MAKE, TEXT_LENGTH, v.getMake());
+        putText(offset + MODEL, TEXT_LENGTH, v.getModel());
+        codec.writeFields(v, extraField(offset));
+    }
+
+    private Vehicle readSlot(int offset) {
+        VehicleCodec<?> codec = VehicleCodecs.forId(table.get(offset + TYPE));
+        if (codec == null) {
+            throw new IllegalArgumentException("Corrupt vehicle slot at offset " + offset);
+        }
+        Vehicle vehicle = codec.readFields(getText(offset + MAKE), getText(offset + MODEL),
+            table.getInt(offset + YEAR), extraField(offset));
+        vehicle.setLicensePlate(getText(offset + PLATE));
+        byte status = table.get(offset + STATUS);
+        if (status < 0 || status >= Vehicle.VehicleStatus.values().length) {
+            throw new IllegalArgumentException("Corrupt vehicle status at offset " + offset);
+        }
+        vehicle.setStatus(Vehicle.VehicleStatus.values()[status]);
+        return vehicle;
+    }
+
+    // The slot's type-specific bytes, through one view of the table reused for every slot
+    private ByteBuffer extraField(int offset) {
+        extraView.limit(offset + EXTRA + VehicleCodecs.MAX_EXTRA_BYTES);
+        extraView.position(offset + EXTRA);
+        return extraView;
+    }
+
+    // Length-prefixed UTF-8, cut at a character boundary when it doesn't fit the field
+    private void putText(int offset, int fieldLength, String text) {
+        String value = text == null ? "" : text;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > fieldLength - 1) {
+            // Whole code points, a surrogate pair cut in half would be stored as '?'
+            value = value.substring(0, value.offsetByCodePoints(value.length(), -1));
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+        table.put(offset, (byte) bytes.length);
+        ByteBuffer field = table.duplicate();
+        field.position(offset + 1);
+        field.put(bytes);
+    }
+
+    private String getText(int offset) {
+        int length = table.get(offset) & 0xFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer field = table.duplicate();
+        field.position(offset + 1);
+        field.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -10,6 +10,16 @@ public class Motorcycle extends Vehicle implements Rentable {
         return hasSidecar;
     }
 
+    @Override
+    public Attribute getAttribute() {
+        return Attribute.SIDECAR;
+    }
+
+    @Override
+    public double getAttributeValue() {
+        return hasSidecar ? 1.0 : 0.0;
+    }
+
     @Override
     public String getInfo() {
         return super.getInfo() + " | Sidecar: " + (hasSidecar ? "Yes" : "No");
@@ -0,0 +1,254 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Number of vehicles out on rent per day, for the whole fleet and per vehicle type.
+// A vehicle counts as out on the days [rent date, return date), the same end-of-day view as
+// RentalSystem.fleetStateAt. A RENT adds one to every day from its date on and the matching RETURN
+// takes it away again from its date on, so both are suffix updates on a segment tree over epoch days
+// with lazy range adds. Counts, vehicle-day sums and peaks over a date range are O(log days).
+// Date ranges of the queries are half-open, [from, to), like RentalAnalytics.
+public class OccupancyIndex implements RentalListener {
+    private DayTree fleet = new DayTree();
+    private Map<String, DayTree> byType = new HashMap<>();
+    private Map<Class<?>, List<DayTree>> treesByClass = new HashMap<>();
+    private Map<String, RentalRecord> openRentals = new HashMap<>();
+
+    @Override
+    public synchronized void recordAdded(RentalRecord record) {
+        String plate = record.getVehicle().getLicensePlate();
+        if ("RENT".equals(record.getTransactionType())) {
+            if (openRentals.putIfAbsent(plate, record) == null) {
+                update(record.getVehicle(), record.getDate().toEpochDay(), 1);
+            }
+        }
+        else if ("RETURN".equals(record.getTransactionType())) {
+            RentalRecord rent = openRentals.remove(plate);
+            if (rent != null) {
+                // A return dated before its rent closes it on the rent day, it never counted
+                long day = Math.max(record.getDate().toEpochDay(), rent.getDate().toEpochDay());
+                update(rent.getVehicle(), day, -1);
+            }
+        }
+    }
+
+    private void update(Vehicle vehicle, long day, int delta) {
+        fleet.addFrom(day, delta);
+        for (DayTree tree : treesByClass.computeIfAbsent(vehicle.getClass(), this::typeTrees)) {
+            tree.addFrom(day, delta);
+        }
+    }
+
+    // A SportCar is counted both as "sportcar" and as "car"
+    private List<DayTree> typeTrees(Class<?> vehicleClass) {
+        List<DayTree> trees = new ArrayList<>();
+        for (Class<?> type = vehicleClass; type != null && type != Vehicle.class; type = type.getSuperclass()) {
+            trees.add(byType.computeIfAbsent(type.getSimpleName().toLowerCase(), t -> new DayTree()));
+        }
+        return trees;
+    }
+
+    private DayTree tree(String type) {
+        if (type == null) {
+            return fleet;
+        }
+        DayTree tree = byType.get(type.toLowerCase());
+        return tree == null ? new DayTree() : tree;
+    }
+
+    public int rentedOn(LocalDate day) {
+        return rentedOn(null, day);
+    }
+
+    // type is a vehicle class name such as "Car", or null for the whole fleet
+    public synchronized int rentedOn(String type, LocalDate day) {
+        long epochDay = day.toEpochDay();
+        return (int) tree(type).sum(epochDay, epochDay + 1);
+    }
+
+    // Vehicle-days on rent in the range
+    public synchronized long vehicleDays(String type, LocalDate from, LocalDate to) {
+        return tree(type).sum(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Largest number of vehicles out on any day of the range, 0 for an empty range
+    public synchronized int peak(String type, LocalDate from, LocalDate to) {
+        return tree(type).max(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Vehicles out on each day of the range
+    public synchronized int[] daily(String type, LocalDate from, LocalDate to) {
+        long start = from.toEpochDay();
+        int[] counts = new int[(int) Math.max(0, to.toEpochDay() - start)];
+        DayTree tree = tree(type);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = (int) tree.sum(start + i, start + i + 1);
+        }
+        return counts;
+    }
+
+    public synchronized int openRentalCount() {
+        return openRentals.size();
+    }
+
+    // Segment tree over a window of days [base, base + capacity) holding a count per day, with the
+    // sum and max of each node. Days before the window count 0; days after it count the same as the
+    // last day of the window, which is what suffix updates leave there. The window doubles towards
+    // a day that falls outside it.
+    private static class DayTree {
+        private static final int INITIAL_DAYS = 1024;
+
+        private long base;
+        private int capacity = 0;
+        private long[] sum;
+        private int[] max;
+        private int[] pending; // add not yet pushed to the children
+
+        void addFrom(long day, int delta) {
+            if (capacity == 0) {
+                base = day - INITIAL_DAYS / 2;
+                resize(base, INITIAL_DAYS);
+            }
+            while (day < base) {
+                resize(base - capacity, capacity * 2);
+            }
+            while (day >= base + capacity) {
+                resize(base, capacity * 2);
+            }
+            add(1, 0, capacity - 1, (int) (day - base), capacity - 1, delta);
+        }
+
+        long sum(long from, long to) {
+            if (capacity == 0 || from >= to) {
+                return 0;
+            }
+            long end = base + capacity;
+            long total = 0;
+            if (to > end) {
+                total += (to - Math.max(from, end)) * lastDay();
+            }
+            long lo = Math.max(from, base);
+            long hi = Math.min(to, end);
+            if (lo < hi) {
+                total += sum(1, 0, capacity - 1, (int) (lo - base), (int) (hi - base - 1));
+            }
+            return total;
+        }
+
+        int max(long from, long to) {
+            if (capacity == 0 || from >= to) {
+                return 0;
+            }
+            long end = base + capacity;
+            int best = Integer.MIN_VALUE;
+            if (from < base) {
+                best = 0;
+            }
+            if (to > end) {
+                best = Math.max(best, lastDay());
+            }
+            long lo = Math.max(from, base);
+            long hi = Math.min(to, end);
+            if (lo < hi) {
+                best = Math.max(best, max(1, 0, capacity - 1, (int) (lo - base), (int) (hi - base - 1)));
+            }
+            return best;
+        }
+
+        private int lastDay() {
+            return (int) sum(1, 0, capacity - 1, capacity - 1, capacity - 1);
+        }
+
+        private void add(int node, int nodeFrom, int nodeTo, int from, int to, int delta) {
+            if (to < nodeFrom || nodeTo < from) {
+                return;
+            }
+            if (from <= nodeFrom && nodeTo <= to) {
+                apply(node, nodeTo - nodeFrom + 1, delta);
+                return;
+            }
+            push(node, nodeTo - nodeFrom + 1);
+            int mid = (nodeFrom + nodeTo) >>> 1;
+            add(2 * node, nodeFrom, mid, from, to, delta);
+            add(2 * node + 1, mid + 1, nodeTo, from, to, delta);
+            pull(node);
+        }
+
+        private long sum(int node, int nodeFrom, int nodeTo, int from, int to) {
+            if (to < nodeFrom || nodeTo < from) {
+                return 0;
+            }
+            if (from <= nodeFrom && nodeTo <= to) {
+                return sum[node];
+            }
+            push(node, nodeTo - nodeFrom + 1);
+            int mid = (nodeFrom + nodeTo) >>> 1;
+            return sum(2 * node, nodeFrom, mid, from, to) + sum(2 * node + 1, mid + 1, nodeTo, from, to);
+        }
+
+        private int max(int node, int nodeFrom, int nodeTo, int from, int to) {
+            if (to < nodeFrom || nodeTo < from) {
+                return Integer.MIN_VALUE;
+            }
+            if (from <= nodeFrom && nodeTo <= to) {
+                return max[node];
+            }
+            push(node, nodeTo - nodeFrom + 1);
+            int mid = (nodeFrom + nodeTo) >>> 1;
+            return Math.max(max(2 * node, nodeFrom, mid, from, to), max(2 * node + 1, mid + 1, nodeTo, from, to));
+        }
+
+        private void apply(int node, int length, int delta) {
+            sum[node] += (long) delta * length;
+            max[node] += delta;
+            if (node < capacity) {
+                pending[node] += delta;
+            }
+        }
+
+        private void push(int node, int length) {
+            if (pending[node] != 0) {
+                apply(2 * node, length / 2, pending[node]);
+                apply(2 * node + 1, length / 2, pending[node]);
+                pending[node] = 0;
+            }
+        }
+
+        private void pull(int node) {
+            sum[node] = sum[2 * node] + sum[2 * node + 1];
+            max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+        }
+
+        // Rebuilds the tree over [newBase, newBase + newCapacity), which must contain the current window
+        private void resize(long newBase, int newCapacity) {
+            int[] days = new int[newCapacity];
+            if (capacity > 0) {
+                for (int node = 1; node < capacity; node++) {
+                    push(node, capacity >> (31 - Integer.numberOfLeadingZeros(node)));
+                }
+                int offset = (int) (base - newBase);
+                for (int i = 0; i < capacity; i++) {
+                    days[offset + i] = max[capacity + i];
+                }
+                int last = max[2 * capacity - 1];
+                for (int i = offset + capacity; i < newCapacity; i++) {
+                    days[i] = last;
+                }
+            }
+            base = newBase;
+            capacity = newCapacity;
+            sum = new long[2 * capacity];
+            max = new int[2 * capacity];
+            pending = new int[2 * capacity];
+            for (int i = 0; i < capacity; i++) {
+                sum[capacity + i] = days[i];
+                max[capacity + i] = days[i];
+            }
+            for (int node = capacity - 1; node > 0; node--) {
+                pull(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tracks open rentals by due date in a hierarchical timing wheel with one-day ticks.
+// Level 0 has a slot per day for the next 64 days, level 1 a slot per 64 days, level 2 a slot per
+// 4096 days. A tick empties one level-0 slot, and every 64 ticks one higher slot is cascaded
+// down, so advancing a day costs O(1) plus the rentals that actually fall due, however large the
+// fleet. A rental becomes overdue the day after its due date; a return cancels it in O(1).
+class OverdueMonitor implements RentalListener {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 3;
+
+    private int defaultRentalDays;
+    private long currentDay;
+    private List<List<Entry>> wheel = new ArrayList<>();
+    private List<Entry> dueNow = new ArrayList<>();
+    private Map<String, Entry> scheduled = new HashMap<>();
+    private Map<String, RentalRecord> overdue = new LinkedHashMap<>();
+
+    // Rentals without a due date are due defaultRentalDays after they started
+    OverdueMonitor(LocalDate today, int defaultRentalDays) {
+        this.currentDay = today.toEpochDay();
+        this.defaultRentalDays = defaultRentalDays;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    LocalDate dueDate(RentalRecord rent) {
+        return rent.getDueDate() != null ? rent.getDueDate() : rent.getDate().plusDays(defaultRentalDays);
+    }
+
+    @Override
+    public synchronized void recordAdded(RentalRecord record) {
+        String plate = record.getVehicle().getLicensePlate();
+        if ("RENT".equals(record.getTransactionType())) {
+            cancel(plate);
+            Entry entry = new Entry(record, dueDate(record).toEpochDay() + 1);
+            scheduled.put(plate, entry);
+            if (entry.overdueDay <= currentDay) {
+                dueNow.add(entry);
+            } else {
+                insert(entry);
+            }
+        }
+        else if ("RETURN".equals(record.getTransactionType())) {
+            cancel(plate);
+        }
+    }
+
+    private void cancel(String plate) {
+        Entry entry = scheduled.remove(plate);
+        if (entry != null) {
+            entry.cancelled = true; // dropped when its slot comes up
+        }
+        overdue.remove(plate);
+    }
+
+    private void insert(Entry entry) {
+        long delta = entry.overdueDay - currentDay;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        long slot = entry.overdueDay >> (BITS * level);
+        if (level == LEVELS - 1 && delta >= 1L << (BITS * LEVELS)) {
+            // Beyond the wheel: park it in the top slot that comes round last, it is re-inserted from there
+            slot = (currentDay >> (BITS * level)) - 1;
+        }
+        wheel.get(level * SLOTS + (int) (slot & (SLOTS - 1))).add(entry);
+    }
+
+    // Moves the wheel forward to the given day and returns the rentals that became overdue on the way
+    synchronized List<RentalRecord> advanceTo(LocalDate today) {
+        List<RentalRecord> newlyOverdue = new ArrayList<>();
+        expire(dueNow, newlyOverdue);
+        dueNow = new ArrayList<>();
+        long target = today.toEpochDay();
+        while (currentDay < target) {
+            currentDay++;
+            // Cascade from the top, so entries can move down more than one level in the same tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentDay & ((1L << (BITS * level)) - 1)) == 0) {
+                    int slot = (int) ((currentDay >> (BITS * level)) & (SLOTS - 1));
+                    List<Entry> bucket = wheel.get(level * SLOTS + slot);
+                    wheel.set(level * SLOTS + slot, new ArrayList<>());
+                    for (Entry entry : bucket) {
+                        if (!entry.cancelled) {
+                            insert(entry);
+                        }
+                    }
+                }
+            }
+            int slot = (int) (currentDay & (SLOTS - 1));
+            List<Entry> bucket = wheel.get(slot);
+            wheel.set(slot, new ArrayList<>());
+            expire(bucket, newlyOverdue);
+        }
+        return newlyOverdue;
+    }
+
+    private void expire(List<Entry> entries, List<RentalRecord> newlyOverdue) {
+        for (Entry entry : entries) {
+            if (!entry.cancelled) {
+                String plate = entry.rent.getVehicle().getLicensePlate();
+                scheduled.remove(plate);
+                overdue.put(plate, entry.rent);
+                newlyOverdue.add(entry.rent);
+            }
+        }
+    }
+
+    synchronized List<RentalRecord> getOverdue() {
+        return new ArrayList<>(overdue.values());
+    }
+
+    synchronized boolean isOverdue(String licensePlate) {
+        return overdue.containsKey(licensePlate);
+    }
+
+    synchronized int scheduledCount() {
+        return scheduled.size();
+    }
+
+    private static class Entry {
+        private final RentalRecord rent;
+        private final long overdueDay;
+        private boolean cancelled = false;
+
+        Entry(RentalRecord rent, long overdueDay) {
+            this.rent = rent;
+            this.overdueDay = overdueDay;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves the history table one page at a time instead of the whole history.
+// With no filter and the natural order a page is read straight from RentalHistory by position.
+// Otherwise a background thread scans the history in chunks, filters and sorts, and keeps only
+// references to the matching records; pages are cut from that array. A newer refresh makes a
+// running one give up, so typing in the filter never queues up stale scans.
+public class PagedHistoryModel {
+    public enum SortKey { NONE, DATE, PLATE, CUSTOMER, TYPE, AMOUNT }
+
+    private static final int SCAN_CHUNK = 65536;
+
+    private RentalSystem rentalSystem;
+    private ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "history-view");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private AtomicInteger generation = new AtomicInteger();
+    private volatile View view = new View(null, null, new Query());
+
+    public PagedHistoryModel(RentalSystem rentalSystem) {
+        this.rentalSystem = rentalSystem;
+    }
+
+    // Rebuilds the view for the query in the background. Completes with the row count,
+    // or -1 when a newer refresh replaced this one before it finished.
+    public CompletableFuture<Integer> refresh(Query query) {
+        int current = generation.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> build(query, current), worker);
+    }
+
+    private int build(Query query, int current) {
+        RentalHistory history = rentalSystem.getRentalHistory();
+        if (query.isUnfiltered() && query.getSortKey() == SortKey.NONE) {
+            return publish(new View(history, null, query), current);
+        }
+
+        List<RentalRecord> matches = new ArrayList<>();
+        int size = history.size();
+        for (int from = 0; from < size; from += SCAN_CHUNK) {
+            if (generation.get() != current) {
+                return -1;
+            }
+            for (RentalRecord record : history.getRecords(from, from + SCAN_CHUNK)) {
+                if (query.matches(record)) {
+                    matches.add(record);
+                }
+            }
+        }
+
+        RentalRecord[] rows = matches.toArray(new RentalRecord[0]);
+        Comparator<RentalRecord> order = comparator(query.getSortKey());
+        if (order != null) {
+            Arrays.parallelSort(rows, query.isAscending() ? order : order.reversed());
+        }
+        else if (!query.isAscending()) {
+            Collections.reverse(Arrays.asList(rows));
+        }
+        return publish(new View(history, rows, query), current);
+    }
+
+    private int publish(View built, int current) {
+        synchronized (this) {
+            if (generation.get() != current) {
+                return -1;
+            }
+            view = built;
+        }
+        return built.rowCount();
+    }
+
+    private static Comparator<RentalRecord> comparator(SortKey key) {
+        switch (key) {
+            case DATE:
+                return Comparator.comparing(RentalRecord::getDate);
+            case PLATE:
+                return Comparator.comparing(r -> r.getVehicle().getLicensePlate());
+            case CUSTOMER:
+                return Comparator.comparing(r -> r.getCustomer().getCustomerName(), String.CASE_INSENSITIVE_ORDER);
+            case TYPE:
+                return Comparator.comparing(RentalRecord::getTransactionType);
+            case AMOUNT:
+                return Comparator.comparingDouble(RentalRecord::getAmount);
+            default:
+                return null;
+        }
+    }
+
+    public int getRowCount() {
+        return view.rowCount();
+    }
+
+    public int getPageCount(int pageSize) {
+        return Math.max(1, (getRowCount() + pageSize - 1) / pageSize);
+    }
+
+    public Query getQuery() {
+        return view.query;
+    }
+
+    // Only the rows of the requested page are copied out
+    public List<RentalRecord> getPage(int pageIndex, int pageSize) {
+        View current = view;
+        int from = pageIndex * pageSize;
+        int to = Math.min(from + pageSize, current.rowCount());
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        if (current.rows != null) {
+            return new ArrayList<>(Arrays.asList(current.rows).subList(from, to));
+        }
+        if (current.query.isAscending()) {
+            return current.history.getRecords(from, to);
+        }
+        // Newest first: the same window counted from the end of the history
+        int size = current.history.size();
+        List<RentalRecord> page = current.history.getRecords(size - to, size - from);
+        Collections.reverse(page);
+        return page;
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    private static class View {
+        private final RentalHistory history;
+        private final RentalRecord[] rows; // null: the history itself, in its natural order
+        private final Query query;
+
+        View(RentalHistory history, RentalRecord[] rows, Query query) {
+            this.history = history;
+            this.rows = rows;
+            this.query = query;
+        }
+
+        int rowCount() {
+            if (rows != null) {
+                return rows.length;
+            }
+            return history == null ? 0 : history.size();
+        }
+    }
+
+    // Filter and sort order of the table. Null or empty criteria match everything; dates are inclusive.
+    public static class Query {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final String plate;
+        private final String customer;
+        private final String type;
+        private final SortKey sortKey;
+        private final boolean ascending;
+
+        public Query() {
+            this(null, null, null, null, null, SortKey.NONE, true);
+        }
+
+        public Query(LocalDate from, LocalDate to, String plate, String customer, String type, SortKey sortKey, boolean ascending) {
+            this.from = from;
+            this.to = to;
+            this.plate = normalize(plate);
+            this.customer = normalize(customer);
+            this.type = normalize(type);
+            this.sortKey = sortKey == null ? SortKey.NONE : sortKey;
+            this.ascending = ascending;
+        }
+
+        private static String normalize(String text) {
+            return text == null || text.trim().isEmpty() ? null : text.trim().toLowerCase();
+        }
+
+        public Query withFilter(LocalDate from, LocalDate to, String plate, String customer, String type) {
+            return new Query(from, to, plate, customer, type, sortKey, ascending);
+        }
+
+        public Query withSort(SortKey sortKey, boolean ascending) {
+            return new Query(from, to, plate, customer, type, sortKey, ascending);
+        }
+
+        public SortKey getSortKey() {
+            return sortKey;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+
+        boolean isUnfiltered() {
+            return from == null && to == null && plate == null && customer == null && type == null;
+        }
+
+        boolean matches(RentalRecord record) {
+            if (from != null && record.getDate().isBefore(from)) return false;
+            if (to != null && record.getDate().isAfter(to)) return false;
+            if (plate != null && !record.getVehicle().getLicensePlate().toLowerCase().contains(plate)) return false;
+            if (type != null && !record.getTransactionType().equalsIgnoreCase(type)) return false;
+            if (customer != null) {
+                Customer c = record.getCustomer();
+                return c.getCustomerName().toLowerCase().contains(customer)
+                    || String.valueOf(c.getCustomerId()).toLowerCase().contains(customer);
+            }
+            return true;
+        }
+    }
+}
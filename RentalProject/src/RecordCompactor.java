@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Folds every closed RENT + RETURN pair that ended before a cutoff date into one summary line:
+//   plate,customerId,startDate,endDate,totalAmount,SUMMARY
+// The summary takes the place of the RENT line and the RETURN line is dropped. Open rentals,
+// recent rentals, existing summaries and lines that can't be parsed are kept as they are.
+// The records file must not be appended to while it is compacted: TextFileStorage holds its lock,
+// and main() is for when the application is not running. Binary and JDBC storage compact their
+// records with fold() in the same way, into SUMMARY entries of their own format.
+public class RecordCompactor {
+
+    public static final String SUMMARY = "SUMMARY";
+
+    public static Result compact(String recordsFile, String archiveFile, LocalDate cutoff, DurableFiles files) throws IOException {
+        if (!Files.exists(Paths.get(recordsFile))) {
+            return new Result(0, 0, 0);
+        }
+        List<String> lines = Files.readAllLines(Paths.get(recordsFile), StandardCharsets.UTF_8);
+        List<Entry> entries = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            entries.add(parse(line));
+        }
+        List<Entry> parsed = new ArrayList<>(entries);
+        List<Integer> folded = fold(entries, cutoff);
+        if (folded.isEmpty()) {
+            return new Result(lines.size(), lines.size(), 0);
+        }
+        // Archive first: if we crash before the rewrite, the raw lines are only duplicated, never lost
+        if (archiveFile != null) {
+            List<String> archived = new ArrayList<>();
+            for (int i : folded) {
+                archived.add(lines.get(i));
+            }
+            files.appendLines(archiveFile, archived);
+        }
+        StringBuilder content = new StringBuilder();
+        int kept = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry == parsed.get(i)) {
+                content.append(lines.get(i)).append(System.lineSeparator());
+                kept++;
+            }
+            else if (entry != null) {
+                // Locale.ROOT: a decimal comma would add a field and the line would no longer load
+                content.append(String.format(Locale.ROOT, "%s,%s,%s,%s,%.2f,%s",
+                    entry.plate, entry.customerId, entry.date, entry.end, entry.amount, SUMMARY));
+                content.append(System.lineSeparator());
+                kept++;
+            }
+        }
+        files.replace(recordsFile, content);
+        return new Result(lines.size(), kept, folded.size() / 2);
+    }
+
+    // Rental lines become RENT and RETURN entries, a rental line that doesn't parse keeps only its
+    // plate so it still breaks pairing, anything else is null
+    private static Entry parse(String line) {
+        String[] parts = line.split(",");
+        boolean rentWithDueDate = parts.length == 6 && parts[4].trim().equals("RENT");
+        if (parts.length != 5 && !rentWithDueDate) {
+            return null;
+        }
+        String plate = parts[0].trim().toUpperCase();
+        try {
+            return new Entry(plate, parts[1].trim(), LocalDate.parse(parts[2].trim()),
+                Double.parseDouble(parts[3].trim()), parts[4].trim(), null);
+        }
+        catch (DateTimeParseException | NumberFormatException e) {
+            return new Entry(plate, null, null, 0.0, "UNPARSED", null);
+        }
+    }
+
+    // The storage-independent part: every RETURN before the cutoff that closes an open RENT of its
+    // plate turns that RENT into a SUMMARY entry and is set to null. Returns the positions of the
+    // folded RENT and RETURN entries, in pairs, so the caller can archive the originals.
+    static List<Integer> fold(List<Entry> entries, LocalDate cutoff) {
+        List<Integer> folded = new ArrayList<>();
+        Map<String, Integer> openRents = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry == null) {
+                continue;
+            }
+            String plate = entry.plate.toUpperCase();
+            if (entry.type.equals("RENT")) {
+                openRents.put(plate, i);
+            }
+            else if (entry.type.equals("RETURN")) {
+                Integer rentIndex = openRents.remove(plate);
+                if (rentIndex != null && entry.date.isBefore(cutoff)) {
+                    Entry rent = entries.get(rentIndex);
+                    entries.set(rentIndex, new Entry(rent.plate, rent.customerId, rent.date,
+                        rent.amount + entry.amount, SUMMARY, entry.date));
+                    entries.set(i, null);
+                    folded.add(rentIndex);
+                    folded.add(i);
+                }
+            }
+            else {
+                openRents.remove(plate);
+            }
+        }
+        return folded;
+    }
+
+    // One stored record as the compactor sees it, for backends that keep plates and customer IDs
+    // rather than lines. due is the due date of a RENT, end the end date of a SUMMARY.
+    static class Entry {
+        final String plate;
+        final String customerId;
+        final LocalDate date;
+        final double amount;
+        final String type;
+        final LocalDate due;
+        final LocalDate end;
+
+        Entry(String plate, String customerId, LocalDate date, double amount, String type, LocalDate dueOrEnd) {
+            this.plate = plate;
+            this.customerId = customerId;
+            this.date = date;
+            this.amount = amount;
+            this.type = type;
+            this.due = type.equals(SUMMARY) ? null : dueOrEnd;
+            this.end = type.equals(SUMMARY) ? dueOrEnd : null;
+        }
+
+        static Entry of(RentalRecord record) {
+            return new Entry(record.getVehicle().getLicensePlate(), record.getCustomer().getCustomerId(),
+                record.getDate(), record.getAmount(), record.getTransactionType(), record.getDueDate());
+        }
+    }
+
+    // Loads summaries back as a RENT at the summary's place and a RETURN held back until the first
+    // later record dated after its end, or the next record of the same plate. That is where the
+    // original RETURN was as far as dates can tell, so the loaded records keep the date order of
+    // the file instead of having a RETURN dated after the records that follow it.
+    static class Replay {
+        private List<RentalRecord> records = new ArrayList<>();
+        private PriorityQueue<RentalRecord> pendingReturns = new PriorityQueue<>(Comparator.comparing(RentalRecord::getDate));
+        private Map<String, RentalRecord> pendingByPlate = new HashMap<>();
+
+        void add(RentalRecord record) {
+            RentalRecord pending = pendingByPlate.remove(record.getVehicle().getLicensePlate());
+            if (pending != null) {
+                pendingReturns.remove(pending);
+                records.add(pending);
+            }
+            release(record.getDate());
+            records.add(record);
+        }
+
+        void addSummary(Vehicle vehicle, Customer customer, LocalDate start, LocalDate end, double total) {
+            add(new RentalRecord(vehicle, customer, start, total, "RENT"));
+            RentalRecord ret = new RentalRecord(vehicle, customer, end, 0.0, "RETURN");
+            pendingReturns.add(ret);
+            pendingByPlate.put(vehicle.getLicensePlate(), ret);
+        }
+
+        List<RentalRecord> finish() {
+            release(LocalDate.MAX);
+            return records;
+        }
+
+        private void release(LocalDate upTo) {
+            while (!pendingReturns.isEmpty() && !pendingReturns.peek().getDate().isAfter(upTo)) {
+                RentalRecord ret = pendingReturns.poll();
+                pendingByPlate.remove(ret.getVehicle().getLicensePlate());
+                records.add(ret);
+            }
+        }
+    }
+
+    public static class Result {
+        private int linesBefore;
+        private int linesAfter;
+        private int summaries;
+        private String unsupportedBy; // backend that can't compact, null if compaction ran
+
+        Result(int linesBefore, int linesAfter, int summaries) {
+            this.linesBefore = linesBefore;
+            this.linesAfter = linesAfter;
+            this.summaries = summaries;
+        }
+
+        static Result notSupported(String backend) {
+            Result result = new Result(0, 0, 0);
+            result.unsupportedBy = backend;
+            return result;
+        }
+
+        public boolean isSupported() {
+            return unsupportedBy == null;
+        }
+
+        // Lines of the text file, entries or rows of the other backends
+        public int getLinesBefore() {
+            return linesBefore;
+        }
+
+        public int getLinesAfter() {
+            return linesAfter;
+        }
+
+        public int getSummaries() {
+            return summaries;
+        }
+
+        @Override
+        public String toString() {
+            if (unsupportedBy != null) {
+                return "Record compaction is not supported by " + unsupportedBy;
+            }
+            return "Compacted " + summaries + " rentals: " + linesBefore + " -> " + linesAfter + " lines";
+        }
+    }
+
+    // Offline use: RecordCompactor <recordsFile> <retentionDays> [archiveFile]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: RecordCompactor <recordsFile> <retentionDays> [archiveFile]");
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(Integer.parseInt(args[1]));
+        String archiveFile = args.length > 2 ? args[2] : null;
+        System.out.println(compact(args[0], archiveFile, cutoff, new DurableFiles(DurableFiles.Durability.ON_RENAME)));
+    }
+}
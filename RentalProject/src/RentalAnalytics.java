@@ -0,0 +1,129 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Fleet analytics over the paired rental intervals of a RentalHistory.
+// Date windows are half-open: [from, to). Open rentals count as rented up to the end of the window.
+public class RentalAnalytics {
+    private RentalHistory rentalHistory;
+
+    public RentalAnalytics(RentalHistory rentalHistory) {
+        this.rentalHistory = rentalHistory;
+    }
+
+    // Fraction of the window the vehicle was rented, between 0 and 1
+    public double utilization(String licensePlate, LocalDate from, LocalDate to) {
+        long windowDays = ChronoUnit.DAYS.between(from, to);
+        if (windowDays <= 0) {
+            return 0.0;
+        }
+        long rentedDays = spans(from, to).parallelStream()
+            .filter(s -> s.plate.equalsIgnoreCase(licensePlate))
+            .mapToLong(s -> s.overlapDays(from, to))
+            .sum();
+        return Math.min(1.0, (double) rentedDays / windowDays);
+    }
+
+    public Map<String, Double> utilizationByVehicle(LocalDate from, LocalDate to) {
+        long windowDays = Math.max(1, ChronoUnit.DAYS.between(from, to));
+        return spans(from, to).parallelStream()
+            .collect(Collectors.groupingByConcurrent(s -> s.plate,
+                Collectors.collectingAndThen(
+                    Collectors.summingLong(s -> s.overlapDays(from, to)),
+                    days -> Math.min(1.0, (double) days / windowDays))));
+    }
+
+    // Utilization of the given vehicles: their rented vehicle-days over their available vehicle-days.
+    // Rentals of vehicles outside the collection don't count, so it works for a part of the fleet.
+    public double fleetUtilization(Collection<Vehicle> fleet, LocalDate from, LocalDate to) {
+        long windowDays = ChronoUnit.DAYS.between(from, to);
+        Set<String> plates = fleet.stream().map(Vehicle::getLicensePlate).collect(Collectors.toSet());
+        if (plates.isEmpty() || windowDays <= 0) {
+            return 0.0;
+        }
+        long rentedDays = spans(from, to).parallelStream()
+            .filter(s -> plates.contains(s.plate))
+            .mapToLong(s -> s.overlapDays(from, to))
+            .sum();
+        return (double) rentedDays / (windowDays * plates.size());
+    }
+
+    // Average length in days of closed rentals
+    public double averageRentalDays() {
+        return rentalHistory.getRentalIntervals().parallelStream()
+            .mapToLong(RentalInterval::getDays)
+            .average()
+            .orElse(0.0);
+    }
+
+    public Map<String, Double> averageRentalDaysByVehicle() {
+        return rentalHistory.getRentalIntervals().parallelStream()
+            .collect(Collectors.groupingByConcurrent(i -> i.getVehicle().getLicensePlate(),
+                Collectors.averagingLong(RentalInterval::getDays)));
+    }
+
+    // Days in the window each vehicle of the fleet spent not rented
+    public Map<String, Long> idleDaysByVehicle(Collection<Vehicle> fleet, LocalDate from, LocalDate to) {
+        long windowDays = Math.max(0, ChronoUnit.DAYS.between(from, to));
+        Map<String, Long> rented = spans(from, to).parallelStream()
+            .collect(Collectors.groupingByConcurrent(s -> s.plate,
+                Collectors.summingLong(s -> s.overlapDays(from, to))));
+        return fleet.parallelStream()
+            .collect(Collectors.toConcurrentMap(Vehicle::getLicensePlate,
+                v -> Math.max(0, windowDays - rented.getOrDefault(v.getLicensePlate(), 0L))));
+    }
+
+    // Average gap in days between a return and the next rental of the same vehicle
+    public Map<String, Double> averageIdleGapByVehicle() {
+        Map<String, List<RentalInterval>> byPlate = rentalHistory.getRentalIntervals().parallelStream()
+            .collect(Collectors.groupingByConcurrent(i -> i.getVehicle().getLicensePlate()));
+        return byPlate.entrySet().parallelStream()
+            .collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> averageGap(e.getValue())));
+    }
+
+    private static double averageGap(List<RentalInterval> intervals) {
+        List<RentalInterval> sorted = new ArrayList<>(intervals);
+        sorted.sort(Comparator.comparing(RentalInterval::getStartDate));
+        long total = 0;
+        for (int i = 1; i < sorted.size(); i++) {
+            total += Math.max(0, ChronoUnit.DAYS.between(sorted.get(i - 1).getEndDate(), sorted.get(i).getStartDate()));
+        }
+        return sorted.size() < 2 ? 0.0 : (double) total / (sorted.size() - 1);
+    }
+
+    // Closed intervals plus open rentals clipped to the end of the window
+    private List<Span> spans(LocalDate from, LocalDate to) {
+        List<Span> result = new ArrayList<>();
+        for (RentalInterval interval : rentalHistory.getRentalIntervals()) {
+            result.add(new Span(interval.getVehicle().getLicensePlate(), interval.getStartDate(), interval.getEndDate()));
+        }
+        for (RentalRecord open : rentalHistory.getOpenRentals()) {
+            result.add(new Span(open.getVehicle().getLicensePlate(), open.getDate(), to));
+        }
+        return result;
+    }
+
+    private static class Span {
+        private final String plate;
+        private final LocalDate start;
+        private final LocalDate end;
+
+        Span(String plate, LocalDate start, LocalDate end) {
+            this.plate = plate;
+            this.start = start;
+            this.end = end;
+        }
+
+        long overlapDays(LocalDate from, LocalDate to) {
+            LocalDate s = start.isAfter(from) ? start : from;
+            LocalDate e = end.isBefore(to) ? end : to;
+            return Math.max(0, ChronoUnit.DAYS.between(s, e));
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+// Stress tests: many threads add, rent and return the same few vehicles in random order while every
+// call is recorded with its start and end time. Afterwards the recorded history of each vehicle has to
+// be linearizable, the rental history has to agree with the operations and the final statuses, and a
+// fresh RentalSystem over the same files has to load the same state.
+class RentalConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 1000;
+    private static final int PLATES = 8;
+    private static final int CUSTOMERS = 4;
+
+    private static final int ADD_VEHICLE = 0;
+    private static final int ADD_CUSTOMER = 1;
+    private static final int RENT = 2;
+    private static final int RETURN = 3;
+
+    @Test
+    void testTextStorageUnderContention() throws Exception {
+        stress("text", false);
+    }
+
+    @Test
+    void testBinaryStorageUnderContention() throws Exception {
+        stress("binary", false);
+    }
+
+    @Test
+    void testBatchedStatusWritesUnderContention() throws Exception {
+        stress("text", true);
+    }
+
+    @Test
+    void testCheckerRejectsDoubleRent() {
+        // Two rents of the same vehicle that both succeed, one after the other, with no return between
+        List<Op> ops = new ArrayList<>();
+        ops.add(new Op(RENT, "STR001", 0, 10, true));
+        ops.add(new Op(RENT, "STR001", 20, 30, true));
+        assertFalse(linearizable(ops));
+
+        // The same two rents overlapping with a return: the return can go between them
+        ops.add(new Op(RETURN, "STR001", 5, 25, true));
+        assertTrue(linearizable(ops));
+    }
+
+    private void stress(String kind, boolean batched) throws Exception {
+        Path directory = Files.createTempDirectory("rental-stress");
+        try {
+            stress(kind, batched, directory);
+        } finally {
+            DurableFiles.deleteRecursively(directory.toFile());
+        }
+    }
+
+    private void stress(String kind, boolean batched, Path directory) throws Exception {
+        RentalSystem rentalSystem = RentalSystem.builder()
+            .storage(kind, directory.toString())
+            .durability(DurableFiles.Durability.NONE)
+            .verbose(false)
+            .build();
+        if (batched) {
+            rentalSystem.beginBatch();
+        }
+
+        List<List<Op>> perThread = new ArrayList<>();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Op> ops = new ArrayList<>();
+            perThread.add(ops);
+            long seed = 1000L * t + System.nanoTime();
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    work(rentalSystem, new Random(seed), ops);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (batched) {
+            rentalSystem.endBatch();
+        }
+        assertTrue(failures.isEmpty(), "Worker threads failed: " + failures);
+
+        List<Op> all = new ArrayList<>();
+        for (List<Op> ops : perThread) {
+            all.addAll(ops);
+        }
+        checkAdds(rentalSystem, all);
+        Map<String, List<Op>> byPlate = new HashMap<>();
+        for (Op op : all) {
+            if (op.kind == RENT || op.kind == RETURN) {
+                byPlate.computeIfAbsent(op.plate, p -> new ArrayList<>()).add(op);
+            }
+        }
+        for (Map.Entry<String, List<Op>> entry : byPlate.entrySet()) {
+            assertTrue(linearizable(entry.getValue()), "Operations on " + entry.getKey() + " are not linearizable");
+        }
+        checkHistory(rentalSystem, all);
+
+        rentalSystem.close();
+        try (RentalSystem reopened = RentalSystem.builder().storage(kind, directory.toString()).verbose(false).build()) {
+            checkReload(rentalSystem, reopened);
+        }
+    }
+
+    private static void work(RentalSystem rentalSystem, Random random, List<Op> ops) {
+        LocalDate today = LocalDate.of(2025, 6, 1);
+        for (int i = 0; i < OPS_PER_THREAD; i++) {
+            String plate = String.format("STR%03d", 1 + random.nextInt(PLATES));
+            String customerId = "S" + (1 + random.nextInt(CUSTOMERS));
+            int choice = random.nextInt(10);
+            if (random.nextInt(4) == 0) {
+                Thread.yield();
+            }
+            long invoke = System.nanoTime();
+            boolean result;
+            int kind;
+            if (choice == 0) {
+                Vehicle vehicle = new Car("Stress", "Test", 2024, 4);
+                vehicle.setLicensePlate(plate);
+                kind = ADD_VEHICLE;
+                result = rentalSystem.addVehicle(vehicle);
+            } else if (choice == 1) {
+                kind = ADD_CUSTOMER;
+                result = rentalSystem.addCustomer(new Customer(customerId, "Stress " + customerId));
+            } else {
+                Vehicle vehicle = rentalSystem.findVehicleByPlate(plate);
+                Customer customer = rentalSystem.findCustomerById(customerId);
+                if (vehicle == null || customer == null) {
+                    continue;
+                }
+                invoke = System.nanoTime();
+                if (choice < 6) {
+                    kind = RENT;
+                    result = rentalSystem.rentVehicle(vehicle, customer, today, 50.0);
+                } else {
+                    kind = RETURN;
+                    result = rentalSystem.returnVehicle(vehicle, customer, today, 0.0);
+                }
+            }
+            ops.add(new Op(kind, kind == ADD_CUSTOMER ? customerId : plate, invoke, System.nanoTime(), result));
+        }
+    }
+
+    // Adding the same plate or customer ID from many threads succeeds exactly once
+    private static void checkAdds(RentalSystem rentalSystem, List<Op> ops) {
+        Map<String, Integer> successes = new HashMap<>();
+        for (Op op : ops) {
+            if ((op.kind == ADD_VEHICLE || op.kind == ADD_CUSTOMER) && op.result) {
+                successes.merge(op.kind + op.plate, 1, Integer::sum);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : successes.entrySet()) {
+            assertEquals(1, entry.getValue().intValue(), "Added more than once: " + entry.getKey());
+        }
+        Set<String> plates = new HashSet<>();
+        for (Vehicle vehicle : rentalSystem.getVehicles()) {
+            assertTrue(plates.add(vehicle.getLicensePlate()), "Duplicate vehicle " + vehicle.getLicensePlate());
+        }
+        Set<String> ids = new HashSet<>();
+        for (Customer customer : rentalSystem.getCustomers()) {
+            assertTrue(ids.add(customer.getCustomerId()), "Duplicate customer " + customer.getCustomerId());
+        }
+    }
+
+    // Every vehicle's records alternate RENT, RETURN, ... and end in its current status
+    private static void checkHistory(RentalSystem rentalSystem, List<Op> ops) {
+        Map<String, String> lastType = new HashMap<>();
+        int rents = 0;
+        int returns = 0;
+        for (RentalRecord record : rentalSystem.getRentalHistory().getRentalHistory()) {
+            String plate = record.getVehicle().getLicensePlate();
+            String previous = lastType.put(plate, record.getTransactionType());
+            if ("RENT".equals(record.getTransactionType())) {
+                assertFalse("RENT".equals(previous), plate + " was rented twice without a return");
+                rents++;
+            } else {
+                assertEquals("RENT", previous, plate + " was returned without being rented");
+                returns++;
+            }
+        }
+
+        int successfulRents = 0;
+        int successfulReturns = 0;
+        for (Op op : ops) {
+            if (op.result && op.kind == RENT) successfulRents++;
+            if (op.result && op.kind == RETURN) successfulReturns++;
+        }
+        assertEquals(successfulRents, rents, "Every successful rent leaves exactly one record");
+        assertEquals(successfulReturns, returns, "Every successful return leaves exactly one record");
+
+        int rented = 0;
+        for (Vehicle vehicle : rentalSystem.getVehicles()) {
+            boolean lastIsRent = "RENT".equals(lastType.get(vehicle.getLicensePlate()));
+            assertEquals(lastIsRent ? Vehicle.VehicleStatus.RENTED : Vehicle.VehicleStatus.AVAILABLE, vehicle.getStatus(),
+                "Status of " + vehicle.getLicensePlate() + " disagrees with its history");
+            if (lastIsRent) {
+                rented++;
+            }
+        }
+        assertEquals(rented, rentalSystem.countVehicles(VehicleFilter.status(Vehicle.VehicleStatus.RENTED)),
+            "Vehicle index is out of date");
+    }
+
+    private static void checkReload(RentalSystem before, RentalSystem after) {
+        assertEquals(statuses(before), statuses(after), "Vehicle files differ from memory");
+        Set<String> ids = new HashSet<>();
+        for (Customer customer : before.getCustomers()) {
+            ids.add(customer.getCustomerId());
+        }
+        Set<String> reloadedIds = new HashSet<>();
+        for (Customer customer : after.getCustomers()) {
+            reloadedIds.add(customer.getCustomerId());
+        }
+        assertEquals(ids, reloadedIds, "Customer file differs from memory");
+        assertEquals(sequences(before), sequences(after), "Record file differs from memory");
+    }
+
+    private static Map<String, Vehicle.VehicleStatus> statuses(RentalSystem rentalSystem) {
+        Map<String, Vehicle.VehicleStatus> statuses = new HashMap<>();
+        for (Vehicle vehicle : rentalSystem.getVehicles()) {
+            statuses.put(vehicle.getLicensePlate(), vehicle.getStatus());
+        }
+        return statuses;
+    }
+
+    // Transaction types per plate in history order; the order across plates is not part of the contract
+    private static Map<String, List<String>> sequences(RentalSystem rentalSystem) {
+        Map<String, List<String>> sequences = new HashMap<>();
+        for (RentalRecord record : rentalSystem.getRentalHistory().getRentalHistory()) {
+            sequences.computeIfAbsent(record.getVehicle().getLicensePlate(), p -> new ArrayList<>())
+                .add(record.getTransactionType());
+        }
+        return sequences;
+    }
+
+    // Wing & Gong search with memoized states (Lowe): is there an order of the operations that respects
+    // real time (an operation that returned before another started comes first) in which every result
+    // is what a single vehicle, starting out available, would have answered?
+    static boolean linearizable(List<Op> ops) {
+        List<Op> sorted = new ArrayList<>(ops);
+        Collections.sort(sorted, Comparator.comparingLong(op -> op.invoke));
+        return search(sorted, new BitSet(sorted.size()), 0, false, new HashSet<>());
+    }
+
+    private static boolean search(List<Op> ops, BitSet done, int linearized, boolean rented, Set<BitSet> seen) {
+        if (linearized == ops.size()) {
+            return true;
+        }
+        BitSet state = (BitSet) done.clone();
+        state.set(ops.size(), rented);
+        if (!seen.add(state)) {
+            return false;
+        }
+        // Only operations that started before every pending operation ended can go next
+        long earliestResponse = Long.MAX_VALUE;
+        for (int i = done.nextClearBit(0); i < ops.size(); i = done.nextClearBit(i + 1)) {
+            earliestResponse = Math.min(earliestResponse, ops.get(i).response);
+        }
+        for (int i = done.nextClearBit(0); i < ops.size() && ops.get(i).invoke <= earliestResponse; i = done.nextClearBit(i + 1)) {
+            Op op = ops.get(i);
+            boolean succeeds = op.kind == RENT ? !rented : rented;
+            if (succeeds != op.result) {
+                continue;
+            }
+            done.set(i);
+            if (search(ops, done, linearized + 1, succeeds ? !rented : rented, seen)) {
+                return true;
+            }
+            done.clear(i);
+        }
+        return false;
+    }
+
+    static class Op {
+        final int kind;
+        final String plate; // customer ID for ADD_CUSTOMER
+        final long invoke;
+        final long response;
+        final boolean result;
+
+        Op(int kind, String plate, long invoke, long response, boolean result) {
+            this.kind = kind;
+            this.plate = plate;
+            this.invoke = invoke;
+            this.response = response;
+            this.result = result;
+        }
+    }
+}
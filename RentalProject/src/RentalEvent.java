@@ -0,0 +1,67 @@
+// One change in the rental system, as published by RentalEventPublisher.
+// The record offset of RENTED and RETURNED is the position of their record in the rental history.
+// Vehicle and customer events carry the offset of the next record, so a subscriber that resumes
+// from the offset of the last event it handled plus one misses nothing that is in the history.
+public class RentalEvent {
+    public enum Type { VEHICLE_ADDED, CUSTOMER_ADDED, RENTED, RETURNED }
+
+    private final Type type;
+    private final long recordOffset;
+    private final Vehicle vehicle;
+    private final Customer customer;
+    private final RentalRecord record;
+
+    private RentalEvent(Type type, long recordOffset, Vehicle vehicle, Customer customer, RentalRecord record) {
+        this.type = type;
+        this.recordOffset = recordOffset;
+        this.vehicle = vehicle;
+        this.customer = customer;
+        this.record = record;
+    }
+
+    static RentalEvent vehicleAdded(Vehicle vehicle, long nextRecordOffset) {
+        return new RentalEvent(Type.VEHICLE_ADDED, nextRecordOffset, vehicle, null, null);
+    }
+
+    static RentalEvent customerAdded(Customer customer, long nextRecordOffset) {
+        return new RentalEvent(Type.CUSTOMER_ADDED, nextRecordOffset, null, customer, null);
+    }
+
+    static RentalEvent of(RentalRecord record, long recordOffset) {
+        Type type = "RENT".equals(record.getTransactionType()) ? Type.RENTED : Type.RETURNED;
+        return new RentalEvent(type, recordOffset, record.getVehicle(), record.getCustomer(), record);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    // Null for VEHICLE_ADDED and CUSTOMER_ADDED
+    public RentalRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case VEHICLE_ADDED:
+                return "#" + recordOffset + " " + type + " " + vehicle.getLicensePlate();
+            case CUSTOMER_ADDED:
+                return "#" + recordOffset + " " + type + " " + customer.getCustomerId();
+            default:
+                return "#" + recordOffset + " " + record;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Publishes vehicle and customer additions, rents and returns to any number of Flow subscribers.
+// The listener callbacks run inside the RentalSystem lock, so they only offer the event to each
+// subscription's bounded buffer and never wait: delivery happens on a pool thread per busy
+// subscription, as fast as that subscriber requests. A subscriber that lets its buffer fill up is
+// dropped with an Overflow error that says where to resume from, instead of holding up rentVehicle.
+public class RentalEventPublisher implements RentalListener, Flow.Publisher<RentalEvent> {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int REPLAY_CHUNK = 1024;
+
+    private static final ExecutorService DELIVERY = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "rental-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RentalSystem rentalSystem;
+    private final int bufferSize;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long nextOffset;
+    private boolean closed = false;
+
+    // Registered by RentalSystem.getEvents(), which holds the system lock so no record slips in
+    // between counting the history and the first recordAdded
+    RentalEventPublisher(RentalSystem rentalSystem, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.rentalSystem = rentalSystem;
+        this.bufferSize = bufferSize;
+        this.nextOffset = rentalSystem.getRentalHistory().size();
+    }
+
+    // Live events only, starting with the next change
+    @Override
+    public void subscribe(Flow.Subscriber<? super RentalEvent> subscriber) {
+        subscribe(subscriber, -1);
+    }
+
+    // Replays the RENTED and RETURNED events of the history from the given record offset, then
+    // continues with live events. Vehicle and customer additions are not in the history, so the
+    // replayed part only has records.
+    public synchronized void subscribe(Flow.Subscriber<? super RentalEvent> subscriber, long fromRecordOffset) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        long from = fromRecordOffset < 0 ? nextOffset : fromRecordOffset;
+        Subscription subscription = new Subscription(subscriber, from, nextOffset);
+        if (from > nextOffset) {
+            subscription.fail(new IllegalArgumentException(
+                "Record offset " + fromRecordOffset + " is past the end of the history (" + nextOffset + ")"));
+        } else if (closed) {
+            subscription.complete();
+        } else {
+            subscriptions.add(subscription);
+        }
+        subscription.schedule();
+    }
+
+    // Record offset the next RENTED or RETURNED event will have
+    public synchronized long getNextRecordOffset() {
+        return nextOffset;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // Completes every subscription once it has delivered what is buffered
+    public synchronized void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+            subscription.schedule();
+        }
+        subscriptions.clear();
+    }
+
+    @Override
+    public synchronized void vehicleAdded(Vehicle vehicle) {
+        publish(RentalEvent.vehicleAdded(vehicle, nextOffset));
+    }
+
+    @Override
+    public synchronized void customerAdded(Customer customer) {
+        publish(RentalEvent.customerAdded(customer, nextOffset));
+    }
+
+    @Override
+    public synchronized void recordAdded(RentalRecord record) {
+        publish(RentalEvent.of(record, nextOffset++));
+    }
+
+    private void publish(RentalEvent event) {
+        if (closed) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.buffer.offer(event)) {
+                subscriptions.remove(subscription);
+                subscription.fail(new Overflow(event.getRecordOffset(), bufferSize));
+            }
+            subscription.schedule();
+        }
+    }
+
+    // The subscriber fell more than the buffer size behind. Subscribing again from the resume offset
+    // replays the records it missed; vehicle and customer additions in the gap are not replayed.
+    public static class Overflow extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private final long resumeOffset;
+
+        Overflow(long resumeOffset, int bufferSize) {
+            super("Subscriber fell more than " + bufferSize + " events behind, resume from record " + resumeOffset);
+            this.resumeOffset = resumeOffset;
+        }
+
+        public long getResumeOffset() {
+            return resumeOffset;
+        }
+    }
+
+    // Delivery follows the usual work-in-progress loop: whoever moves wip from 0 runs the drain on a
+    // pool thread, everybody else just increments it so the running drain goes round once more.
+    // onSubscribe, onNext and the final signal are therefore never called concurrently.
+    private class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super RentalEvent> subscriber;
+        private final ArrayBlockingQueue<RentalEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        private final long replayEnd;
+        private long replayNext;
+        private List<RentalRecord> replayChunk = new ArrayList<>();
+        private int replayIndex = 0;
+        private boolean started = false;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false; // no more events will be buffered
+        private volatile Throwable error;
+        private volatile boolean errorFirst = false; // signal the error before the buffered events
+
+        Subscription(Flow.Subscriber<? super RentalEvent> subscriber, long replayFrom, long replayEnd) {
+            this.subscriber = subscriber;
+            this.replayNext = replayFrom;
+            this.replayEnd = replayEnd;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                subscriptions.remove(this);
+                errorFirst = true;
+                fail(new IllegalArgumentException("Requested " + n + " events, must be positive"));
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void fail(Throwable throwable) {
+            error = throwable;
+            done = true;
+        }
+
+        void complete() {
+            done = true;
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                DELIVERY.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!started) {
+                    started = true;
+                    subscriber.onSubscribe(this);
+                }
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested && !cancelled && !errorFirst) {
+                    RentalEvent event = next();
+                    if (event == null) {
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        // Against the Flow rules; the subscriber is dropped rather than left half-delivered
+                        System.err.println("Rental event subscriber failed, cancelling it: " + e);
+                        cancel();
+                    }
+                    emitted++;
+                }
+                if (cancelled) {
+                    buffer.clear();
+                    return;
+                }
+                // done has to be read before looking at the buffer, events are offered before it is set
+                if (done && (errorFirst || (replayFinished() && buffer.isEmpty()))) {
+                    cancelled = true;
+                    buffer.clear();
+                    if (error != null) {
+                        subscriber.onError(error);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private boolean replayFinished() {
+            return replayNext >= replayEnd && replayIndex >= replayChunk.size();
+        }
+
+        // Replayed history first, fetched a chunk at a time, then the live events
+        private RentalEvent next() {
+            if (replayIndex < replayChunk.size()) {
+                long offset = replayNext - replayChunk.size() + replayIndex;
+                return RentalEvent.of(replayChunk.get(replayIndex++), offset);
+            }
+            if (replayNext < replayEnd) {
+                int to = (int) Math.min(replayEnd, replayNext + REPLAY_CHUNK);
+                replayChunk = rentalSystem.getRentalHistory().getRecords((int) replayNext, to);
+                replayIndex = 0;
+                replayNext = to;
+                if (!replayChunk.isEmpty()) {
+                    return RentalEvent.of(replayChunk.get(replayIndex++), replayNext - replayChunk.size());
+                }
+            }
+            return buffer.poll();
+        }
+    }
+}
@@ -1,18 +1,113 @@
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeMap;
 
 public class RentalHistory {
     private List<RentalRecord> rentalRecords = new ArrayList<>();
 
-    public void addRecord(RentalRecord record) {
+    // Pairing stage: each RETURN is linked to the open RENT of the same plate as records arrive
+    private Map<String, RentalRecord> openRentals = new HashMap<>();
+    private List<RentalInterval> rentalIntervals = new ArrayList<>();
+
+    private FleetCheckpoints checkpoints;
+
+    public RentalHistory() {
+        this(FleetCheckpoints.DEFAULT_INTERVAL);
+    }
+
+    public RentalHistory(int checkpointInterval) {
+        checkpoints = new FleetCheckpoints(checkpointInterval);
+    }
+
+    public synchronized void addRecord(RentalRecord record) {
         rentalRecords.add(record);
+        pairRecord(record);
+        checkpoints.apply(record);
+    }
+
+    // Storage the fleet checkpoints are saved to, set before any records come in
+    public synchronized void setCheckpointStore(RentalStorage storage) {
+        checkpoints.setStore(storage);
+    }
+
+    // Records are about to be loaded in the background: the ones added until then are new
+    public synchronized void startLoading() {
+        checkpoints.startLoading();
+    }
+
+    public synchronized void prependRecords(List<RentalRecord> records) {
+        prependRecords(records, new TreeMap<>());
+    }
+
+    // Puts records loaded after start-up in front of the ones added meanwhile and pairs everything
+    // again. storedCheckpoints are the fleet checkpoints saved with the records.
+    public synchronized void prependRecords(List<RentalRecord> records, SortedMap<LocalDate, FleetCheckpoints.Checkpoint> storedCheckpoints) {
+        rentalRecords.addAll(0, records);
+        openRentals.clear();
+        rentalIntervals.clear();
+        for (RentalRecord record : rentalRecords) {
+            pairRecord(record);
+        }
+        checkpoints.load(rentalRecords, storedCheckpoints);
+    }
+
+    private void pairRecord(RentalRecord record) {
+        String plate = record.getVehicle().getLicensePlate();
+        if ("RENT".equals(record.getTransactionType())) {
+            openRentals.put(plate, record);
+        }
+        else if ("RETURN".equals(record.getTransactionType())) {
+            RentalRecord rent = openRentals.remove(plate);
+            if (rent != null) {
+                rentalIntervals.add(new RentalInterval(rent, record));
+            }
+        }
+    }
+
+    // A snapshot: records added later don't show up in it, and it cannot be changed
+    public synchronized List<RentalRecord> getRentalHistory() {
+        return Collections.unmodifiableList(new ArrayList<>(rentalRecords));
+    }
+
+    public synchronized int size() {
+        return rentalRecords.size();
+    }
+
+    // Copy of the records at positions [from, to), clamped to the history
+    public synchronized List<RentalRecord> getRecords(int from, int to) {
+        int start = Math.max(0, from);
+        int end = Math.min(rentalRecords.size(), to);
+        if (start >= end) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(rentalRecords.subList(start, end));
+    }
+
+    public synchronized List<RentalInterval> getRentalIntervals() {
+        return new ArrayList<>(rentalIntervals);
+    }
+
+    public synchronized List<RentalRecord> getOpenRentals() {
+        return new ArrayList<>(openRentals.values());
+    }
+
+    public synchronized RentalRecord getOpenRental(String licensePlate) {
+        return openRentals.get(licensePlate.toUpperCase());
     }
 
-    public List<RentalRecord> getRentalHistory() {
-        return rentalRecords;
+    // Plates that were rented at the end of the given day, going by record dates; costs the records
+    // dated after the nearest checkpoint
+    public synchronized Set<String> getRentedPlatesAt(LocalDate date) {
+        return checkpoints.rentedPlatesAt(date);
     }
 
-    public List<RentalRecord> getRentalRecordsByCustomer(String customerName) {
+    public synchronized List<RentalRecord> getRentalRecordsByCustomer(String customerName) {
         List<RentalRecord> result = new ArrayList<>();
         for (RentalRecord record : rentalRecords) {
             if (record.getCustomer().toString().toLowerCase().contains(customerName.toLowerCase())) {
@@ -22,7 +117,7 @@ public class RentalHistory {
         return result;
     }
 
-    public List<RentalRecord> getRentalRecordsByVehicle(String licensePlate) {
+    public synchronized List<RentalRecord> getRentalRecordsByVehicle(String licensePlate) {
         List<RentalRecord> result = new ArrayList<>();
         for (RentalRecord record : rentalRecords) {
             if (record.getVehicle().getLicensePlate().equalsIgnoreCase(licensePlate)) {
@@ -0,0 +1,335 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+// The rental history as a restart sees it: records written by one RentalSystem and loaded by the next
+// in each HistoryLoading mode, with rentals going on while a lazy load is still running.
+class RentalHistoryTest {
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("rental-history");
+    }
+
+    @AfterEach
+    void tearDown() {
+        DurableFiles.deleteRecursively(directory.toFile());
+    }
+
+    @Test
+    void testEveryLoadingModeLoadsTheSameHistory() throws IOException {
+        writeStoredHistory(4, 50);
+        for (RentalSystem.HistoryLoading mode : RentalSystem.HistoryLoading.values()) {
+            try (RentalSystem rentalSystem = open(mode)) {
+                if (mode == RentalSystem.HistoryLoading.EAGER) {
+                    assertTrue(rentalSystem.isHistoryLoaded());
+                } else if (mode == RentalSystem.HistoryLoading.ON_DEMAND) {
+                    assertFalse(rentalSystem.isHistoryLoaded(), "Nothing is read before the first query");
+                }
+                assertEquals(4 * 50 * 2, rentalSystem.getRentalHistory().size(), mode.toString());
+                assertTrue(rentalSystem.isHistoryLoaded());
+                assertEquals(4 * 50, rentalSystem.getRentalHistory().getRentalIntervals().size(), mode.toString());
+                assertTrue(rentalSystem.getRentalHistory().getOpenRentals().isEmpty(), mode.toString());
+            }
+        }
+    }
+
+    @Test
+    void testRentalsBeforeOnDemandLoadComeAfterStoredRecords() throws IOException {
+        writeStoredHistory(2, 10);
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.ON_DEMAND)) {
+            Vehicle vehicle = rentalSystem.findVehicleByPlate("HIS000");
+            Customer customer = rentalSystem.findCustomerById("H1");
+            LocalDate later = START.plusDays(1000);
+            assertTrue(rentalSystem.rentVehicle(vehicle, customer, later, 10.0));
+            assertFalse(rentalSystem.isHistoryLoaded());
+
+            List<RentalRecord> records = rentalSystem.getRentalHistory().getRentalHistory();
+            assertEquals(2 * 10 * 2 + 1, records.size());
+            assertEquals(later, records.get(records.size() - 1).getDate(), "The live rent goes after the loaded ones");
+            assertEquals(START, records.get(0).getDate());
+            assertNotNull(rentalSystem.getRentalHistory().getOpenRental("HIS000"));
+            assertEquals(2 * 10, rentalSystem.getRentalHistory().getRentalIntervals().size());
+        }
+    }
+
+    @Test
+    void testBackgroundLoadRacingWithRentals() throws Exception {
+        int storedPlates = 4;
+        int storedRentals = 2500;
+        int threads = 4;
+        int rentalsPerThread = 200;
+        writeStoredHistory(storedPlates + threads, storedRentals);
+
+        List<RentalRecord> live = new ArrayList<>();
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.BACKGROUND)) {
+            Customer customer = rentalSystem.findCustomerById("H1");
+            Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Vehicle vehicle = rentalSystem.findVehicleByPlate(plate(storedPlates + t));
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                        LocalDate day = START.plusDays(storedRentals * 2);
+                        for (int i = 0; i < rentalsPerThread; i++) {
+                            assertTrue(rentalSystem.rentVehicle(vehicle, customer, day, 10.0));
+                            assertTrue(rentalSystem.returnVehicle(vehicle, customer, day.plusDays(1), 0.0));
+                            day = day.plusDays(2);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertTrue(failures.isEmpty(), failures.toString());
+
+            int stored = (storedPlates + threads) * storedRentals * 2;
+            List<RentalRecord> records = rentalSystem.getRentalHistory().getRentalHistory();
+            assertEquals(stored + threads * rentalsPerThread * 2, records.size());
+            for (int i = 0; i < stored; i++) {
+                assertTrue(records.get(i).getDate().isBefore(START.plusDays(storedRentals * 2)), "Stored records come first");
+            }
+            live.addAll(records.subList(stored, records.size()));
+            assertEquals((storedPlates + threads) * storedRentals + threads * rentalsPerThread,
+                rentalSystem.getRentalHistory().getRentalIntervals().size(), "Every rent is paired with its return");
+            assertTrue(rentalSystem.getRentalHistory().getOpenRentals().isEmpty());
+        }
+
+        // The live records were appended to the file in the order they went into the history
+        try (RentalSystem reopened = open(RentalSystem.HistoryLoading.EAGER)) {
+            List<RentalRecord> records = reopened.getRentalHistory().getRentalHistory();
+            List<RentalRecord> tail = records.subList(records.size() - live.size(), records.size());
+            for (int i = 0; i < live.size(); i++) {
+                assertEquals(live.get(i).toString(), tail.get(i).toString());
+            }
+        }
+    }
+
+    @Test
+    void testHistoryIsASnapshot() {
+        RentalHistory history = new RentalHistory();
+        Vehicle vehicle = new Car("Toyota", "Camry", 2020, 5);
+        vehicle.setLicensePlate("HIS000");
+        Customer customer = new Customer("H1", "History Customer");
+        history.addRecord(new RentalRecord(vehicle, customer, START, 10.0, "RENT"));
+
+        List<RentalRecord> records = history.getRentalHistory();
+        history.addRecord(new RentalRecord(vehicle, customer, START.plusDays(1), 0.0, "RETURN"));
+        assertEquals(1, records.size());
+        assertThrows(UnsupportedOperationException.class, () -> records.clear());
+    }
+
+    @Test
+    void testFleetStateWithBackdatedRental() throws IOException {
+        try (RentalSystem rentalSystem = RentalSystem.builder().inMemory().verbose(false).build()) {
+            Customer customer = new Customer("H1", "History Customer");
+            rentalSystem.addCustomer(customer);
+            Vehicle first = new Car("Toyota", "Camry", 2020, 5);
+            first.setLicensePlate("AAA111");
+            Vehicle second = new Car("Honda", "Civic", 2021, 5);
+            second.setLicensePlate("BBB222");
+            rentalSystem.addVehicle(first);
+            rentalSystem.addVehicle(second);
+
+            assertTrue(rentalSystem.rentVehicle(first, customer, LocalDate.of(2025, 1, 10), 10.0));
+            assertTrue(rentalSystem.rentVehicle(second, customer, LocalDate.of(2025, 1, 5), 10.0));
+
+            Map<String, Vehicle.VehicleStatus> state = rentalSystem.fleetStateAt(LocalDate.of(2025, 1, 7));
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, state.get("AAA111"));
+            assertEquals(Vehicle.VehicleStatus.RENTED, state.get("BBB222"));
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, rentalSystem.fleetStateAt(LocalDate.of(2025, 1, 4)).get("BBB222"));
+            assertEquals(Vehicle.VehicleStatus.RENTED, rentalSystem.fleetStateAt(LocalDate.of(2025, 1, 10)).get("AAA111"));
+        }
+    }
+
+    // Records in random date order against a replay of each plate's records sorted by date
+    @Test
+    void testCheckpointsMatchReplayInDateOrder() {
+        RentalHistory history = new RentalHistory(7);
+        Random random = new Random(42);
+        Customer customer = new Customer("H1", "History Customer");
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int p = 0; p < 6; p++) {
+            Vehicle vehicle = new Car("Toyota", "Camry", 2020, 5);
+            vehicle.setLicensePlate(plate(p));
+            vehicles.add(vehicle);
+        }
+        List<RentalRecord> added = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            // Mostly moving forward, every fifth record backdated
+            int day = i % 5 == 4 ? random.nextInt(i / 2 + 1) : i / 2 + random.nextInt(3);
+            Vehicle vehicle = vehicles.get(random.nextInt(vehicles.size()));
+            String type = random.nextBoolean() ? "RENT" : "RETURN";
+            RentalRecord record = new RentalRecord(vehicle, customer, START.plusDays(day), 10.0, type);
+            history.addRecord(record);
+            added.add(record);
+            if (i % 50 == 49) {
+                for (int d = -1; d < i / 2 + 4; d++) {
+                    assertEquals(rentedInDateOrder(added, START.plusDays(d)), history.getRentedPlatesAt(START.plusDays(d)),
+                        "Day " + d + " after " + (i + 1) + " records");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCompactedHistoryGivesTheSameFleetState() throws IOException {
+        writeStoredHistory(4, 50);
+        List<Map<String, Vehicle.VehicleStatus>> before = new ArrayList<>();
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            for (int d = 0; d < 101; d++) {
+                before.add(rentalSystem.fleetStateAt(START.plusDays(d)));
+            }
+            // A rental still open at the end, which compaction keeps as it is
+            rentalSystem.rentVehicle(rentalSystem.findVehicleByPlate("HIS002"), rentalSystem.findCustomerById("H1"),
+                START.plusDays(100), 10.0);
+            before.set(100, rentalSystem.fleetStateAt(START.plusDays(100)));
+            assertEquals(4 * 50, rentalSystem.compactRecords(0, false).getSummaries());
+        }
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            for (int d = 0; d < 101; d++) {
+                assertEquals(before.get(d), rentalSystem.fleetStateAt(START.plusDays(d)), "Day " + d);
+            }
+        }
+    }
+
+    @Test
+    void testCheckpointsAreStoredWithTheRecords() throws IOException {
+        writeStoredHistory(4, 300);
+        String checkpointsFile = directory.resolve("fleet_checkpoints.txt").toString();
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            assertTrue(rentalSystem.isHistoryLoaded());
+        }
+        SortedMap<LocalDate, FleetCheckpoints.Checkpoint> stored = FleetCheckpoints.read(checkpointsFile);
+        assertTrue(stored.size() >= 2, "Every " + FleetCheckpoints.DEFAULT_INTERVAL + " records and the day before the last");
+        LocalDate day = stored.firstKey();
+        FleetCheckpoints.Checkpoint first = stored.get(day);
+        Set<String> truth = first.getRentedPlates();
+
+        // A stored checkpoint is used as it is: a doctored one shows through
+        Set<String> doctored = Collections.singleton("HIS001");
+        Files.write(directory.resolve("fleet_checkpoints.txt"), Collections.singletonList(
+            FleetCheckpoints.format(day, new FleetCheckpoints.Checkpoint(first.getRecords(), doctored))), StandardCharsets.UTF_8);
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            assertEquals(doctored, rented(rentalSystem, day));
+        }
+
+        // One that doesn't cover as many records as there are up to its day is rebuilt
+        Files.write(directory.resolve("fleet_checkpoints.txt"), Collections.singletonList(
+            FleetCheckpoints.format(day, new FleetCheckpoints.Checkpoint(first.getRecords() + 1, doctored))), StandardCharsets.UTF_8);
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.ON_DEMAND)) {
+            assertEquals(truth, rented(rentalSystem, day));
+        }
+        assertEquals(truth, FleetCheckpoints.read(checkpointsFile).get(day).getRentedPlates());
+
+        // A rental dated before the checkpoints drops them, here and on disk
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            Vehicle vehicle = new Car("Honda", "Civic", 2021, 5);
+            vehicle.setLicensePlate("NEW000");
+            rentalSystem.addVehicle(vehicle);
+            assertTrue(rentalSystem.rentVehicle(vehicle, rentalSystem.findCustomerById("H1"), START.minusDays(1), 10.0));
+            assertTrue(FleetCheckpoints.read(checkpointsFile).isEmpty());
+            Set<String> expected = new HashSet<>(truth);
+            expected.add("NEW000");
+            assertEquals(expected, rented(rentalSystem, day));
+        }
+        try (RentalSystem rentalSystem = open(RentalSystem.HistoryLoading.EAGER)) {
+            assertTrue(rented(rentalSystem, day).contains("NEW000"));
+            assertFalse(FleetCheckpoints.read(checkpointsFile).isEmpty());
+        }
+    }
+
+    private static Set<String> rented(RentalSystem rentalSystem, LocalDate day) {
+        Set<String> rented = new HashSet<>();
+        for (Map.Entry<String, Vehicle.VehicleStatus> entry : rentalSystem.fleetStateAt(day).entrySet()) {
+            if (entry.getValue() == Vehicle.VehicleStatus.RENTED) {
+                rented.add(entry.getKey());
+            }
+        }
+        return rented;
+    }
+
+    // Stable sort by date keeps the records of one day in the order they were added
+    private static Set<String> rentedInDateOrder(List<RentalRecord> records, LocalDate date) {
+        List<RentalRecord> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparing(RentalRecord::getDate));
+        Set<String> rented = new HashSet<>();
+        for (RentalRecord record : sorted) {
+            if (record.getDate().isAfter(date)) {
+                break;
+            }
+            if (record.getTransactionType().equals("RENT")) {
+                rented.add(record.getVehicle().getLicensePlate());
+            } else {
+                rented.remove(record.getVehicle().getLicensePlate());
+            }
+        }
+        return rented;
+    }
+
+    private RentalSystem open(RentalSystem.HistoryLoading mode) throws IOException {
+        return RentalSystem.builder()
+            .dataDirectory(directory.toString())
+            .historyLoading(mode)
+            .durability(DurableFiles.Durability.NONE)
+            .verbose(false)
+            .build();
+    }
+
+    // Written straight to the text files, so the test doesn't wait for thousands of single appends
+    private void writeStoredHistory(int plates, int rentalsPerPlate) throws IOException {
+        List<String> vehicles = new ArrayList<>();
+        List<String> records = new ArrayList<>();
+        for (int p = 0; p < plates; p++) {
+            Vehicle vehicle = new Car("Toyota", "Camry", 2020, 5);
+            vehicle.setLicensePlate(plate(p));
+            vehicles.add(VehicleCodecs.encode(vehicle));
+        }
+        LocalDate day = START;
+        for (int i = 0; i < rentalsPerPlate; i++) {
+            for (int p = 0; p < plates; p++) {
+                records.add(plate(p) + ",H1," + day + ",10.00,RENT");
+            }
+            for (int p = 0; p < plates; p++) {
+                records.add(plate(p) + ",H1," + day.plusDays(1) + ",0.00,RETURN");
+            }
+            day = day.plusDays(2);
+        }
+        Files.write(directory.resolve("vehicles.txt"), vehicles, StandardCharsets.UTF_8);
+        Files.write(directory.resolve("customers.txt"), Collections.singletonList("H1,History Customer"), StandardCharsets.UTF_8);
+        Files.write(directory.resolve("rental_records.txt"), records, StandardCharsets.UTF_8);
+    }
+
+    private static String plate(int p) {
+        return String.format("HIS%03d", p);
+    }
+}
@@ -0,0 +1,54 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+// A RENT record paired with the RETURN record that closed it
+public class RentalInterval {
+    private RentalRecord rentRecord;
+    private RentalRecord returnRecord;
+
+    public RentalInterval(RentalRecord rentRecord, RentalRecord returnRecord) {
+        this.rentRecord = rentRecord;
+        this.returnRecord = returnRecord;
+    }
+
+    public RentalRecord getRentRecord() {
+        return rentRecord;
+    }
+
+    public RentalRecord getReturnRecord() {
+        return returnRecord;
+    }
+
+    public Vehicle getVehicle() {
+        return rentRecord.getVehicle();
+    }
+
+    public Customer getCustomer() {
+        return rentRecord.getCustomer();
+    }
+
+    public LocalDate getStartDate() {
+        return rentRecord.getDate();
+    }
+
+    public LocalDate getEndDate() {
+        return returnRecord.getDate();
+    }
+
+    public long getDays() {
+        return ChronoUnit.DAYS.between(getStartDate(), getEndDate());
+    }
+
+    public double getTotalAmount() {
+        return rentRecord.getAmount() + returnRecord.getAmount();
+    }
+
+    @Override
+    public String toString() {
+        return "Plate: " + getVehicle().getLicensePlate() +
+               " | Customer: " + getCustomer().getCustomerName() +
+               " | From: " + getStartDate() +
+               " | To: " + getEndDate() +
+               " | Amount: $" + getTotalAmount();
+    }
+}
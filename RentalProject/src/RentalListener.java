@@ -0,0 +1,21 @@
+// Callbacks for changes made through RentalSystem. They run on the thread that made the change
+// while it still holds the RentalSystem lock, so they have to be quick and must not call
+// RentalSystem's mutators themselves.
+public interface RentalListener {
+
+    default void vehicleAdded(Vehicle vehicle) {
+    }
+
+    default void customerAdded(Customer customer) {
+    }
+
+    default void recordAdded(RentalRecord record) {
+    }
+
+    default void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+    }
+
+    // A rented vehicle was not back by the end of its due date; rent is the open RENT record
+    default void rentalOverdue(RentalRecord rent) {
+    }
+}
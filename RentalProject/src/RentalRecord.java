@@ -6,13 +6,19 @@ public class RentalRecord {
     private LocalDate recordDate;
     private double totalAmount;
     private String recordType; // "RENT" or "RETURN"
+    private LocalDate dueDate; // RENT only, null when the rental was made without one
 
     public RentalRecord(Vehicle vehicle, Customer customer, LocalDate recordDate, double totalAmount, String recordType) {
+        this(vehicle, customer, recordDate, totalAmount, recordType, null);
+    }
+
+    public RentalRecord(Vehicle vehicle, Customer customer, LocalDate recordDate, double totalAmount, String recordType, LocalDate dueDate) {
         this.vehicle = vehicle;
         this.customer = customer;
         this.recordDate = recordDate;
         this.totalAmount = totalAmount;
         this.recordType = recordType;
+        this.dueDate = dueDate;
     }
 
     public Customer getCustomer(){
@@ -34,12 +40,17 @@ public class RentalRecord {
     public String getTransactionType(){
         return recordType;
     }
+
+    public LocalDate getDueDate(){
+        return dueDate;
+    }
     
     @Override
     public String toString() {
         return recordType + " | Plate: " + vehicle.getLicensePlate() + 
                " | Customer: " + customer.getCustomerName() + 
                " | Date: " + recordDate + 
-               " | Amount: $" + totalAmount;
+               " | Amount: $" + totalAmount +
+               (dueDate != null ? " | Due: " + dueDate : "");
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Read-only copy of a primary RentalSystem, fed by its ReplicationServer. Searches, history and
+// reports run against getRentalSystem() as usual; its mutators refuse changes. Start the primary
+// with -Drental.replication.port=7070 and a follower in another JVM with
+//   java RentalReplica localhost 7070
+// A follower on another host needs the primary started with -Drental.replication.bind=<address>.
+public class RentalReplica implements Closeable {
+    private RentalSystem rentalSystem;
+    private Socket socket;
+    private CountDownLatch snapshotLoaded = new CountDownLatch(1);
+    private volatile long appliedEvents = 0;
+    private volatile boolean connected = true;
+
+    private RentalReplica(RentalSystem rentalSystem, Socket socket) {
+        this.rentalSystem = rentalSystem;
+        this.socket = socket;
+    }
+
+    public static RentalReplica connect(String host, int port) throws IOException {
+        RentalSystem replicaSystem = RentalSystem.builder().inMemory().build();
+        replicaSystem.setReadOnly(true);
+        RentalReplica replica = new RentalReplica(replicaSystem, new Socket(host, port));
+        Thread reader = new Thread(replica::follow, "replica-" + host + ":" + port);
+        reader.setDaemon(true);
+        reader.start();
+        return replica;
+    }
+
+    public RentalSystem getRentalSystem() {
+        return rentalSystem;
+    }
+
+    // True once the primary's snapshot has been applied; later changes keep streaming in
+    public boolean awaitSnapshot(long timeout, TimeUnit unit) throws InterruptedException {
+        return snapshotLoaded.await(timeout, unit);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getAppliedEvents() {
+        return appliedEvents;
+    }
+
+    private void follow() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                try {
+                    apply(line);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Replica: skipped event \"" + line + "\": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                System.err.println("Replica: connection lost: " + e.getMessage());
+            }
+        } finally {
+            connected = false;
+        }
+    }
+
+    private void apply(String line) {
+        if (line.equals(ReplicationServer.READY)) {
+            snapshotLoaded.countDown();
+            return;
+        }
+        String[] parts = line.split(",", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Unknown event");
+        }
+        switch (parts[0]) {
+            case "V":
+                rentalSystem.applyVehicle(VehicleCodecs.decode(parts[1]));
+                break;
+            case "C": {
+                String[] fields = parts[1].split(",", 2);
+                rentalSystem.applyCustomer(new Customer(fields[0], fields.length > 1 ? fields[1] : ""));
+                break;
+            }
+            case "R": {
+                String[] fields = parts[1].split(",");
+                Vehicle vehicle = rentalSystem.findVehicleByPlate(fields[0]);
+                Customer customer = rentalSystem.findCustomerById(fields[1]);
+                if (vehicle == null || customer == null) {
+                    throw new IllegalArgumentException("Unknown vehicle or customer");
+                }
+                rentalSystem.applyRecord(new RentalRecord(vehicle, customer, LocalDate.parse(fields[2]),
+                    Double.parseDouble(fields[3]), fields[4], fields.length > 5 ? LocalDate.parse(fields[5]) : null));
+                break;
+            }
+            case "S": {
+                String[] fields = parts[1].split(",");
+                Vehicle vehicle = rentalSystem.findVehicleByPlate(fields[0]);
+                if (vehicle == null) {
+                    throw new IllegalArgumentException("Unknown vehicle");
+                }
+                rentalSystem.applyStatus(vehicle, Vehicle.VehicleStatus.valueOf(fields[1]));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown event");
+        }
+        appliedEvents++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java RentalReplica <host> <port> [report seconds]");
+            return;
+        }
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        try (RentalReplica replica = connect(args[0], Integer.parseInt(args[1]))) {
+            RentalSystem replicaSystem = replica.getRentalSystem();
+            replicaSystem.setVerbose(false);
+            while (replica.isConnected()) {
+                Thread.sleep(seconds * 1000L);
+                System.out.println("vehicles: " + replicaSystem.getVehicles().size()
+                    + ", available: " + replicaSystem.countVehicles(VehicleFilter.status(Vehicle.VehicleStatus.AVAILABLE))
+                    + ", customers: " + replicaSystem.getCustomers().size()
+                    + ", records: " + replicaSystem.getRentalHistory().size()
+                    + ", events applied: " + replica.getAppliedEvents());
+            }
+            System.out.println("Primary closed the connection.");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Storage SPI: where vehicles, customers and rental records live between runs.
+// RentalSystem only talks to this interface. The backend is picked with create(), or with the
+// rental.storage (text | binary | mapped | jdbc | memory) and rental.storage.location system properties.
+public interface RentalStorage extends Closeable {
+
+    List<Vehicle> loadVehicles() throws IOException;
+
+    List<Customer> loadCustomers() throws IOException;
+
+    // Current end of the record store. loadRecords only returns records that existed at the mark,
+    // so a background load never sees records that were added (and kept in memory) after it started.
+    long recordsMark() throws IOException;
+
+    List<RentalRecord> loadRecords(Map<String, Vehicle> vehiclesByPlate, Map<String, Customer> customersById, long mark) throws IOException;
+
+    void saveVehicles(Collection<? extends Vehicle> newVehicles) throws IOException;
+
+    // Persists a status change. fleet is the complete current fleet, for backends that rewrite it as a whole.
+    void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) throws IOException;
+
+    // Several status changes at once, after a batch
+    default void saveVehicleStatuses(Collection<Vehicle> changed, Collection<Vehicle> fleet) throws IOException {
+        for (Vehicle vehicle : changed) {
+            saveVehicleStatus(vehicle, fleet);
+        }
+    }
+
+    void saveCustomers(Collection<? extends Customer> newCustomers) throws IOException;
+
+    void saveRecord(RentalRecord record) throws IOException;
+
+    // Folds closed rentals that ended before the cutoff into summaries, see RecordCompactor.
+    // Backends with nothing on disk to shrink keep the default, which reports it as not supported.
+    default RecordCompactor.Result compactRecords(LocalDate cutoff, boolean archive) throws IOException {
+        return RecordCompactor.Result.notSupported(getClass().getSimpleName());
+    }
+
+    // Fleet checkpoints (see FleetCheckpoints), kept next to the records so a restart starts from them
+    SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() throws IOException;
+
+    void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) throws IOException;
+
+    // Drops the checkpoints of this day and later
+    void dropCheckpoints(LocalDate from) throws IOException;
+
+    // Usage of each vehicle at its last service by plate, see MaintenanceScheduler
+    Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() throws IOException;
+
+    void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) throws IOException;
+
+    // Null when the backend manages durability itself
+    default DurableFiles.Durability getDurability() {
+        return null;
+    }
+
+    default void setDurability(DurableFiles.Durability durability) throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    static RentalStorage create(String kind, String location) throws IOException {
+        switch (kind.toLowerCase()) {
+            case "text":
+                return new TextFileStorage(location, new DurableFiles(DurableFiles.Durability.ON_RENAME));
+            case "binary":
+                return new BinaryLogStorage(location, new DurableFiles(DurableFiles.Durability.ON_RENAME));
+            case "mapped":
+                return new MappedVehicleStorage(location,
+                    new TextFileStorage(location, new DurableFiles(DurableFiles.Durability.ON_RENAME)));
+            case "jdbc":
+                return new JdbcStorage(location);
+            case "memory":
+                return new InMemoryStorage();
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + kind);
+        }
+    }
+
+    static RentalStorage fromSystemProperties() throws IOException {
+        String kind = System.getProperty("rental.storage", "text");
+        String location = System.getProperty("rental.storage.location",
+            kind.equalsIgnoreCase("jdbc") ? "jdbc:h2:./src/rental" : "src");
+        return create(kind, location);
+    }
+}
@@ -0,0 +1,521 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// The storage layer on its own: DurableFiles, then every RentalStorage backend written and read
+// back through a fresh instance, the way a restart sees it.
+class RentalStorageTest {
+    private Path directory;
+    private Map<String, Vehicle> vehicles = new ConcurrentHashMap<>();
+    private Customer customer = new Customer("S1", "Storage Customer");
+    private InMemoryStorage memory = new InMemoryStorage();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("rental-storage");
+    }
+
+    @AfterEach
+    void tearDown() {
+        DurableFiles.deleteRecursively(directory.toFile());
+    }
+
+    @Test
+    void testReplaceGoesThroughTempFile() throws IOException {
+        Path target = directory.resolve("sub").resolve("vehicles.txt");
+        DurableFiles files = new DurableFiles(DurableFiles.Durability.ON_RENAME);
+        files.replace(target.toString(), "first");
+        assertEquals("first", read(target));
+
+        // A temp file left behind by a crash is overwritten, and never survives a replace
+        Path temp = target.resolveSibling("vehicles.txt.tmp");
+        Files.write(temp, "stale and longer".getBytes(StandardCharsets.UTF_8));
+        files.replace(target.toString(), "second");
+        assertEquals("second", read(target));
+        assertFalse(Files.exists(temp));
+        assertEquals(1, directory.resolve("sub").toFile().list().length);
+    }
+
+    @Test
+    void testAppendInEveryMode() throws IOException {
+        String nl = System.lineSeparator();
+        for (DurableFiles.Durability durability : DurableFiles.Durability.values()) {
+            Path target = directory.resolve(durability + ".txt");
+            DurableFiles files = new DurableFiles(durability, 2);
+            files.append(target.toString(), "a");
+            files.appendLines(target.toString(), Arrays.asList("b", "c"));
+            files.appendBytes(target.toString(), "d".getBytes(StandardCharsets.UTF_8));
+            assertEquals("a" + nl + "b" + nl + "c" + nl + "d", read(target), durability.toString());
+            // Only GROUP leaves appends to be forced later
+            assertEquals(durability == DurableFiles.Durability.GROUP ? 1 : 0, files.pendingOps(), durability.toString());
+        }
+    }
+
+    @Test
+    void testGroupForcesOnceGroupIsFull() throws IOException {
+        Path first = directory.resolve("first.txt");
+        Path second = directory.resolve("second.txt");
+        DurableFiles files = new DurableFiles(DurableFiles.Durability.GROUP, 3);
+        files.append(first.toString(), "1");
+        files.append(second.toString(), "2");
+        assertEquals(2, files.pendingOps());
+        files.append(first.toString(), "3");
+        assertEquals(0, files.pendingOps());
+
+        files.append(second.toString(), "4");
+        assertEquals(1, files.pendingOps());
+        files.sync();
+        assertEquals(0, files.pendingOps());
+
+        // Switching mode forces what is pending first
+        files.append(first.toString(), "5");
+        files.setDurability(DurableFiles.Durability.NONE);
+        assertEquals(0, files.pendingOps());
+        files.append(first.toString(), "6");
+        assertEquals(0, files.pendingOps());
+        assertEquals(4, Files.readAllLines(first).size());
+        assertEquals(2, Files.readAllLines(second).size());
+    }
+
+    @Test
+    void testGroupSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new DurableFiles(DurableFiles.Durability.GROUP, 0));
+    }
+
+    @Test
+    void testTextCompactionReloadsInDateOrder() throws IOException {
+        TextFileStorage storage = new TextFileStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE));
+        LocalDate day = LocalDate.of(2025, 1, 1);
+        storage.saveRecord(record("AAA111", day, 100.0, "RENT"));
+        storage.saveRecord(record("BBB222", day.plusDays(2), 50.0, "RENT"));
+        storage.saveRecord(record("AAA111", day.plusDays(4), 10.0, "RETURN"));
+        storage.saveRecord(record("AAA111", day.plusDays(4), 100.0, "RENT"));
+        storage.saveRecord(record("BBB222", day.plusDays(7), 5.0, "RETURN"));
+        storage.saveRecord(record("AAA111", day.plusDays(8), 0.0, "RETURN"));
+        storage.saveRecord(record("CCC333", day.plusDays(9), 70.0, "RENT"));
+
+        RecordCompactor.Result result = storage.compactRecords(day.plusDays(30), true);
+        assertEquals(3, result.getSummaries());
+        assertEquals(4, result.getLinesAfter());
+        assertEquals(6, Files.readAllLines(directory.resolve("rental_records_archive.txt")).size());
+
+        List<RentalRecord> records = load(storage);
+        assertEquals(7, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertFalse(records.get(i).getDate().isBefore(records.get(i - 1).getDate()), "Out of date order at " + i);
+        }
+        RentalHistory history = new RentalHistory();
+        for (RentalRecord record : records) {
+            history.addRecord(record);
+        }
+        assertEquals(3, history.getRentalIntervals().size());
+        assertEquals(110.0, history.getRentalIntervals().get(0).getTotalAmount(), 0.001);
+        assertEquals(55.0, history.getRentalIntervals().get(1).getTotalAmount(), 0.001);
+        assertEquals(100.0, history.getRentalIntervals().get(2).getTotalAmount(), 0.001, "Re-rented on its return day");
+        assertNotNull(history.getOpenRental("CCC333"));
+    }
+
+    @Test
+    void testTextCompactionUnderCommaDecimalLocale() throws IOException {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            TextFileStorage storage = new TextFileStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE));
+            LocalDate day = LocalDate.of(2025, 1, 1);
+            storage.saveRecord(record("AAA111", day, 100.25, "RENT"));
+            storage.saveRecord(record("AAA111", day.plusDays(3), 12.5, "RETURN"));
+            storage.saveRecord(record("BBB222", day.plusDays(4), 40.75, "RENT"));
+
+            assertEquals(1, storage.compactRecords(day.plusDays(30), false).getSummaries());
+            List<RentalRecord> records = load(storage);
+            assertEquals(3, records.size(), "The summary and the open rental both load");
+            assertEquals("AAA111 RENT " + day + " 112.75", describe(records.get(0)));
+            assertEquals("AAA111 RETURN " + day.plusDays(3) + " 0.0", describe(records.get(1)));
+            assertEquals("BBB222 RENT " + day.plusDays(4) + " 40.75", describe(records.get(2)));
+        }
+        finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void testTextCompactionDoesNotLoseConcurrentAppends() throws Exception {
+        TextFileStorage storage = new TextFileStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE));
+        LocalDate day = LocalDate.of(2025, 1, 1);
+        int plates = 200;
+        int rentalsPerPlate = 5;
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < rentalsPerPlate; i++) {
+                    for (int p = 0; p < plates; p++) {
+                        String plate = String.format("CMP%03d", p);
+                        storage.saveRecord(record(plate, day.plusDays(2 * i), 10.0, "RENT"));
+                        storage.saveRecord(record(plate, day.plusDays(2 * i + 1), 1.0, "RETURN"));
+                    }
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        writer.start();
+        int summaries = 0;
+        while (writer.isAlive()) {
+            summaries += storage.compactRecords(day.plusDays(365), false).getSummaries();
+        }
+        writer.join();
+        assertTrue(failures.isEmpty(), failures.toString());
+        summaries += storage.compactRecords(day.plusDays(365), false).getSummaries();
+
+        assertEquals(plates * rentalsPerPlate, summaries, "Every rental is compacted exactly once");
+        assertEquals(plates * rentalsPerPlate, Files.readAllLines(directory.resolve("rental_records.txt")).size());
+        List<RentalRecord> records = load(storage);
+        assertEquals(plates * rentalsPerPlate * 2, records.size());
+        double total = 0;
+        for (RentalRecord record : records) {
+            total += record.getAmount();
+        }
+        assertEquals(plates * rentalsPerPlate * 11.0, total, 0.001);
+    }
+
+    @Test
+    void testTextRoundTrip() throws IOException {
+        roundTrip("text");
+    }
+
+    @Test
+    void testBinaryRoundTrip() throws IOException {
+        roundTrip("binary");
+    }
+
+    @Test
+    void testMappedRoundTrip() throws IOException {
+        roundTrip("mapped");
+    }
+
+    @Test
+    void testJdbcRoundTrip() throws IOException {
+        assumeTrue(jdbcAvailable(), "No H2 driver on the classpath");
+        roundTrip("jdbc");
+    }
+
+    @Test
+    void testMemoryRoundTrip() throws IOException {
+        roundTrip("memory");
+    }
+
+    @Test
+    void testCompactionOnEveryBackend() throws IOException {
+        for (String kind : new String[] { "text", "binary", "mapped", "jdbc" }) {
+            if (kind.equals("jdbc") && !jdbcAvailable()) {
+                continue;
+            }
+            LocalDate day = LocalDate.of(2025, 1, 1);
+            try (RentalStorage storage = open(kind)) {
+                storage.saveRecord(record("AAA111", day, 100.0, "RENT"));
+                storage.saveRecord(record("BBB222", day.plusDays(1), 50.0, "RENT"));
+                storage.saveRecord(record("AAA111", day.plusDays(2), 10.0, "RETURN"));
+                storage.saveRecord(new RentalRecord(vehicle("CCC333"), customer, day.plusDays(3), 70.0, "RENT", day.plusDays(10)));
+                storage.saveRecord(record("CCC333", day.plusDays(40), 0.0, "RETURN"));
+
+                RecordCompactor.Result result = storage.compactRecords(day.plusDays(20), true);
+                assertTrue(result.isSupported(), kind);
+                assertEquals(1, result.getSummaries(), kind);
+                assertEquals(4, result.getLinesAfter(), kind);
+                assertEquals(0, storage.compactRecords(day.plusDays(20), true).getSummaries(), kind + ": summaries stay");
+                storage.saveRecord(record("AAA111", day.plusDays(41), 100.0, "RENT"));
+            }
+            try (RentalStorage storage = open(kind)) {
+                List<RentalRecord> records = load(storage);
+                assertEquals(6, records.size(), kind);
+                assertEquals("AAA111 RENT " + day + " 110.0", describe(records.get(0)), kind);
+                assertEquals("BBB222 RENT " + day.plusDays(1) + " 50.0", describe(records.get(1)), kind);
+                assertEquals("AAA111 RETURN " + day.plusDays(2) + " 0.0", describe(records.get(2)), kind + ": the RETURN keeps its date order");
+                assertEquals(day.plusDays(10), records.get(3).getDueDate(), kind);
+                assertEquals("AAA111 RENT " + day.plusDays(41) + " 100.0", describe(records.get(5)), kind);
+            }
+        }
+        assertEquals(2, Files.readAllLines(directory.resolve("text").resolve("rental_records_archive.txt")).size());
+        assertTrue(Files.size(directory.resolve("binary").resolve("rental_records_archive.bin")) > 0);
+    }
+
+    @Test
+    void testCompactionNotSupportedInMemory() throws IOException {
+        assertFalse(new InMemoryStorage().compactRecords(LocalDate.now(), false).isSupported());
+        try (RentalSystem rentalSystem = RentalSystem.builder().inMemory().verbose(false).build()) {
+            RecordCompactor.Result result = rentalSystem.compactRecords(30, false);
+            assertFalse(result.isSupported());
+            assertEquals("Record compaction is not supported by InMemoryStorage", result.toString());
+        }
+    }
+
+    @Test
+    void testBinaryLogCutsTornTail() throws IOException {
+        Vehicle car = vehicle("AAA111");
+        LocalDate day = LocalDate.of(2025, 1, 1);
+        try (BinaryLogStorage storage = new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE))) {
+            storage.saveVehicles(Collections.singletonList(car));
+            storage.saveCustomers(Collections.singletonList(customer));
+            car.setStatus(Vehicle.VehicleStatus.RENTED);
+            storage.saveVehicleStatus(car, Collections.singletonList(car));
+            storage.saveRecord(record("AAA111", day, 100.0, "RENT"));
+            storage.saveRecord(record("AAA111", day.plusDays(1), 0.0, "RETURN"));
+            storage.saveRecord(record("AAA111", day.plusDays(2), 100.0, "RENT"));
+        }
+        // Crashes in the middle of an append: half a record, a status entry and a customer cut short
+        Path records = directory.resolve("rental_records.bin");
+        try (FileChannel channel = FileChannel.open(records, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        Files.write(directory.resolve("vehicles.bin"), new byte[] { 'S', 0, 6, 'A', 'A' }, StandardOpenOption.APPEND);
+        Files.write(directory.resolve("customers.bin"), new byte[] { 0, 2, 'S' }, StandardOpenOption.APPEND);
+
+        try (BinaryLogStorage storage = new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE))) {
+            assertEquals(2, load(storage).size());
+            assertEquals(Vehicle.VehicleStatus.RENTED, storage.loadVehicles().get(0).getStatus());
+            assertEquals(1, storage.loadCustomers().size());
+            storage.saveRecord(record("AAA111", day.plusDays(3), 90.0, "RENT"));
+            storage.saveCustomers(Collections.singletonList(new Customer("S2", "Second Customer")));
+        }
+        try (BinaryLogStorage storage = new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE))) {
+            List<RentalRecord> loaded = load(storage);
+            assertEquals(3, loaded.size(), "Appends after the cut are readable");
+            assertEquals(90.0, loaded.get(2).getAmount(), 0.001);
+            assertEquals(2, storage.loadCustomers().size());
+        }
+
+        // A zero-filled tail is cut as well
+        Files.write(directory.resolve("vehicles.bin"), new byte[64], StandardOpenOption.APPEND);
+        try (BinaryLogStorage storage = new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE))) {
+            assertEquals(1, storage.loadVehicles().size());
+        }
+    }
+
+    @Test
+    void testBinaryLogRejectsCorruptEntry() throws IOException {
+        try (BinaryLogStorage storage = new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE))) {
+            storage.saveVehicles(Collections.singletonList(vehicle("AAA111")));
+        }
+        // A status byte out of range with more data behind it is corruption, not a torn tail
+        Files.write(directory.resolve("vehicles.bin"), new byte[] { 'S', 0, 6, 'A', 'A', 'A', '1', '1', '1', 99, 'V' },
+            StandardOpenOption.APPEND);
+        IOException e = assertThrows(IOException.class,
+            () -> new BinaryLogStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE)));
+        assertTrue(e.getMessage().contains("Corrupt vehicle status: 99"), e.getMessage());
+    }
+
+    @Test
+    void testMappedTableGrowsPastInitialSlots() throws IOException {
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            fleet.add(vehicle(String.format("MP%c%03d", (char) ('A' + i / 1000), i % 1000)));
+        }
+        try (MappedVehicleStorage storage = openMapped()) {
+            storage.loadVehicles();
+            storage.saveVehicles(fleet.subList(0, 1000));
+            storage.saveVehicles(fleet.subList(1000, 1500));
+            fleet.get(3).setStatus(Vehicle.VehicleStatus.RENTED);
+            storage.saveVehicleStatus(fleet.get(3), fleet);
+            fleet.get(1200).setStatus(Vehicle.VehicleStatus.MAINTENANCE);
+            storage.saveVehicleStatus(fleet.get(1200), fleet);
+        }
+        assertEquals(64 + 2048 * 128, Files.size(directory.resolve("vehicles.dat")), "Doubled once");
+
+        try (MappedVehicleStorage storage = openMapped()) {
+            List<Vehicle> loaded = storage.loadVehicles();
+            assertEquals(1500, loaded.size());
+            for (int i = 0; i < fleet.size(); i++) {
+                assertEquals(VehicleCodecs.encode(fleet.get(i)), VehicleCodecs.encode(loaded.get(i)));
+            }
+            // Status changes after a reopen still find their slot
+            loaded.get(1200).setStatus(Vehicle.VehicleStatus.AVAILABLE);
+            storage.saveVehicleStatus(loaded.get(1200), loaded);
+        }
+        try (MappedVehicleStorage storage = openMapped()) {
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, storage.loadVehicles().get(1200).getStatus());
+        }
+    }
+
+    @Test
+    void testMappedTextIsCutAtCharacterBoundaries() throws IOException {
+        StringBuilder make = new StringBuilder("\u0160koda");
+        StringBuilder model = new StringBuilder("X");
+        for (int i = 0; i < 20; i++) {
+            make.append('\u00e9');
+            model.appendCodePoint(0x1F697); // a car emoji, two chars and four bytes in UTF-8
+        }
+        Car car = new Car(make.toString(), model.toString(), 2020, 5);
+        car.setLicensePlate("UTF001");
+        try (MappedVehicleStorage storage = openMapped()) {
+            storage.loadVehicles();
+            storage.saveVehicles(Collections.singletonList(car));
+        }
+        try (MappedVehicleStorage storage = openMapped()) {
+            Vehicle loaded = storage.loadVehicles().get(0);
+            // 39 bytes of each field are used: 6 + 16 * 2 and 1 + 9 * 4
+            assertEquals(make.substring(0, 5 + 16), loaded.getMake());
+            assertEquals(model.substring(0, 1 + 9 * 2), loaded.getModel());
+            assertEquals("UTF001", loaded.getLicensePlate());
+        }
+    }
+
+    @Test
+    void testMappedCopiesDelegateFleetOnFirstStart() throws IOException {
+        Vehicle car = vehicle("CPY001");
+        Vehicle truck = new Truck("Volvo", "FH", 2021, 3.5);
+        truck.setLicensePlate("CPY002");
+        truck.setStatus(Vehicle.VehicleStatus.RENTED);
+        TextFileStorage text = new TextFileStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE));
+        text.saveVehicles(Arrays.asList(car, truck));
+
+        try (MappedVehicleStorage storage = openMapped()) {
+            List<Vehicle> loaded = storage.loadVehicles();
+            assertEquals(2, loaded.size());
+            assertEquals(Vehicle.VehicleStatus.RENTED, loaded.get(1).getStatus());
+            loaded.get(1).setStatus(Vehicle.VehicleStatus.AVAILABLE);
+            storage.saveVehicleStatus(loaded.get(1), loaded);
+        }
+        // From now on the table is the source of the fleet, the text file is not read again
+        try (MappedVehicleStorage storage = openMapped()) {
+            List<Vehicle> loaded = storage.loadVehicles();
+            assertEquals(2, loaded.size());
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, loaded.get(1).getStatus());
+            assertTrue(loaded.get(1) instanceof Truck);
+        }
+        assertEquals(Vehicle.VehicleStatus.RENTED, text.loadVehicles().get(1).getStatus());
+    }
+
+    private MappedVehicleStorage openMapped() throws IOException {
+        return new MappedVehicleStorage(directory.toString(),
+            new TextFileStorage(directory.toString(), new DurableFiles(DurableFiles.Durability.NONE)));
+    }
+
+    private void roundTrip(String kind) throws IOException {
+        Car car = new Car("Toyota", "Camry", 2020, 5);
+        car.setLicensePlate("RTP001");
+        Truck truck = new Truck("Volvo", "FH", 2021, 3.5);
+        truck.setLicensePlate("RTP002");
+        Motorcycle bike = new Motorcycle("Honda", "CB", 2022, true);
+        bike.setLicensePlate("RTP003");
+        SportCar sportCar = new SportCar("Porsche", "911", 2023, 2, 450, true);
+        sportCar.setLicensePlate("RTP004");
+        List<Vehicle> fleet = Arrays.asList(car, truck, bike, sportCar);
+        Customer doe = new Customer("R1", "Doe, John");
+        LocalDate day = LocalDate.of(2025, 1, 1);
+        try (RentalStorage storage = open(kind)) {
+            storage.saveVehicles(fleet);
+            storage.saveCustomers(Arrays.asList(doe, customer));
+            car.setStatus(Vehicle.VehicleStatus.RENTED);
+            storage.saveVehicleStatus(car, fleet);
+            storage.saveRecord(new RentalRecord(car, doe, day, 100.0, "RENT", day.plusDays(7)));
+            storage.saveRecord(new RentalRecord(truck, customer, day.plusDays(1), 80.0, "RENT"));
+            storage.saveRecord(new RentalRecord(truck, customer, day.plusDays(3), 12.5, "RETURN"));
+            storage.saveServicePoint("RTP002", new MaintenanceScheduler.ServicePoint(3, 40));
+            storage.saveServicePoint("RTP002", new MaintenanceScheduler.ServicePoint(5, 61));
+        }
+        try (RentalStorage storage = open(kind)) {
+            List<String> expected = new ArrayList<>();
+            for (Vehicle vehicle : fleet) {
+                expected.add(VehicleCodecs.encode(vehicle));
+            }
+            Collections.sort(expected);
+            List<String> loaded = new ArrayList<>();
+            Map<String, Vehicle> byPlate = new HashMap<>();
+            for (Vehicle vehicle : storage.loadVehicles()) {
+                loaded.add(VehicleCodecs.encode(vehicle));
+                byPlate.put(vehicle.getLicensePlate(), vehicle);
+            }
+            Collections.sort(loaded);
+            assertEquals(expected, loaded, kind);
+
+            Map<String, Customer> byId = new HashMap<>();
+            for (Customer loadedCustomer : storage.loadCustomers()) {
+                byId.put(loadedCustomer.getCustomerId(), loadedCustomer);
+            }
+            assertEquals(2, byId.size(), kind);
+            assertEquals("Doe, John", byId.get("R1").getCustomerName(), kind);
+
+            List<RentalRecord> records = storage.loadRecords(byPlate, byId, storage.recordsMark());
+            assertEquals(3, records.size(), kind);
+            assertEquals("RTP001 RENT " + day + " 100.0", describe(records.get(0)), kind);
+            assertEquals(day.plusDays(7), records.get(0).getDueDate(), kind);
+            assertSame(byId.get("R1"), records.get(0).getCustomer(), kind);
+            assertEquals("RTP002 RENT " + day.plusDays(1) + " 80.0", describe(records.get(1)), kind);
+            assertEquals("RTP002 RETURN " + day.plusDays(3) + " 12.5", describe(records.get(2)), kind);
+            assertNull(records.get(2).getDueDate(), kind);
+
+            Map<String, MaintenanceScheduler.ServicePoint> servicePoints = storage.loadServicePoints();
+            assertEquals(1, servicePoints.size(), kind);
+            assertEquals(5, servicePoints.get("RTP002").getRentals(), "The last service counts, " + kind);
+            assertEquals(61, servicePoints.get("RTP002").getRentedDays(), kind);
+        }
+    }
+
+    private RentalStorage open(String kind) throws IOException {
+        switch (kind) {
+            case "memory":
+                return memory;
+            case "jdbc":
+                return RentalStorage.create(kind, "jdbc:h2:" + directory.resolve("jdbc").resolve("rental").toAbsolutePath());
+            default:
+                // RentalSystem.Builder creates the directory before opening the storage
+                Files.createDirectories(directory.resolve(kind));
+                return RentalStorage.create(kind, directory.resolve(kind).toString());
+        }
+    }
+
+    private static boolean jdbcAvailable() {
+        try {
+            DriverManager.getDriver("jdbc:h2:mem:");
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static String describe(RentalRecord record) {
+        return record.getVehicle().getLicensePlate() + " " + record.getTransactionType() + " "
+            + record.getDate() + " " + record.getAmount();
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+    }
+
+    private RentalRecord record(String plate, LocalDate date, double amount, String type) {
+        return new RentalRecord(vehicle(plate), customer, date, amount, type);
+    }
+
+    private Vehicle vehicle(String plate) {
+        return vehicles.computeIfAbsent(plate, p -> {
+            Vehicle vehicle = new Car("Toyota", "Camry", 2020, 5);
+            vehicle.setLicensePlate(p);
+            return vehicle;
+        });
+    }
+
+    private List<RentalRecord> load(RentalStorage storage) throws IOException {
+        return storage.loadRecords(vehicles, Collections.singletonMap(customer.getCustomerId(), customer), storage.recordsMark());
+    }
+}
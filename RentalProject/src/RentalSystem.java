@@ -1,35 +1,152 @@
 import java.util.List;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
-public class RentalSystem {
+public class RentalSystem implements Closeable {
 
     private static RentalSystem instance;
 
-    private List<Vehicle> vehicles = new ArrayList<>();
-    private List<Customer> customers = new ArrayList<>();
+    // How the rental history is brought into memory when the system starts
+    public enum HistoryLoading {
+        EAGER,        // read all records before the constructor returns
+        BACKGROUND,   // start with vehicles and customers, read records on a background thread
+        ON_DEMAND     // read records the first time the history is queried
+    }
+
+    // Used by getInstance() and by instances that don't choose their own
+    private static HistoryLoading defaultHistoryLoading = HistoryLoading.EAGER;
+
+    private HistoryLoading historyLoading;
+
+    // Changes go through the synchronized methods below; readers (GUI, searches) never block on them
+    private List<Vehicle> vehicles = new CopyOnWriteArrayList<>();
+    private List<Customer> customers = new CopyOnWriteArrayList<>();
     private RentalHistory rentalHistory = new RentalHistory();
 
-    private static final String VEHICLES_FILE = "src/vehicles.txt";
-    private static final String CUSTOMERS_FILE = "src/customers.txt";
-    private static final String RECORDS_FILE = "src/rental_records.txt";
+    // Lookup indexes kept alongside the lists, keyed by upper-case plate and by customer ID
+    private Map<String, Vehicle> vehiclesByPlate = new ConcurrentHashMap<>();
+    private Map<String, Customer> customersById = new ConcurrentHashMap<>();
+
+    private volatile boolean verbose = true;
+
+    // Vehicles whose status changed during a batch (see beginBatch), null outside a batch
+    private Set<Vehicle> pendingStatus;
+    private int batchDepth = 0;
+
+    // Replicas mirror a primary and refuse changes of their own
+    private volatile boolean readOnly = false;
+
+    private List<RentalListener> listeners = new CopyOnWriteArrayList<>();
+    private VehicleIndex vehicleIndex = new VehicleIndex();
+
+    // Rentals made without a due date are due this many days after they start
+    public static final int DEFAULT_RENTAL_DAYS = 7;
+
+    // Created on first use, see overdueMonitor()
+    private OverdueMonitor overdueMonitor;
+    private OccupancyIndex occupancyIndex;
+    private RentalEventPublisher eventPublisher;
+    private VehicleUsage vehicleUsage;
+    private VehicleAllocator allocator;
+    private MaintenanceScheduler maintenance;
+    private int serviceRentalInterval = MaintenanceScheduler.DEFAULT_RENTAL_INTERVAL;
+    private int serviceDayInterval = MaintenanceScheduler.DEFAULT_DAY_INTERVAL;
+    private ScheduledExecutorService maintenanceChecks;
+    private ScheduledExecutorService overdueChecks;
+
+    private RentalStorage storage;
+
+    // Pending history load in BACKGROUND and ON_DEMAND modes, null once EAGER loading is done
+    private FutureTask<Void> historyLoader;
 
     private RentalSystem() {
+        this(openConfiguredStorage());
+    }
+
+    RentalSystem(RentalStorage storage) {
+        this(storage, defaultHistoryLoading);
+    }
+
+    private RentalSystem(RentalStorage storage, HistoryLoading historyLoading) {
+        this.storage = storage;
+        this.historyLoading = historyLoading;
+        rentalHistory.setCheckpointStore(storage);
         loadData();
+        vehicleIndex.addAll(vehicles);
+        addListener(vehicleIndex);
     }
 
-    public static RentalSystem getInstance() {
+    private static RentalStorage openConfiguredStorage() {
+        try {
+            return RentalStorage.fromSystemProperties();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open rental storage: " + e.getMessage(), e);
+        }
+    }
+
+    // Must be called before the first getInstance()
+    public static void setHistoryLoading(HistoryLoading mode) {
+        defaultHistoryLoading = mode;
+    }
+
+    // The application's shared instance, over the storage chosen by the system properties.
+    // Tests, benchmarks and tools that need their own data use builder() instead.
+    public static synchronized RentalSystem getInstance() {
         if (instance == null) {
             instance = new RentalSystem();
         }
         return instance;
     }
     
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Stops the background overdue checks and closes the storage. Closing the shared instance
+    // drops it, so a later getInstance() opens the storage again.
+    @Override
+    public synchronized void close() {
+        if (overdueChecks != null) {
+            overdueChecks.shutdownNow();
+            overdueChecks = null;
+        }
+        if (maintenanceChecks != null) {
+            maintenanceChecks.shutdownNow();
+            maintenanceChecks = null;
+        }
+        if (eventPublisher != null) {
+            eventPublisher.close();
+        }
+        try {
+            storage.close();
+        } catch (IOException e) {
+            System.err.println("Error closing rental storage: " + e.getMessage());
+        }
+        synchronized (RentalSystem.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
     // Created for JavaFX
     public List<Vehicle> getVehicles() {
     	return vehicles;
@@ -40,113 +157,344 @@ public class RentalSystem {
     }
 
     public RentalHistory getRentalHistory() {
+        awaitHistory();
         return rentalHistory;
     }
 
-    public boolean addVehicle(Vehicle vehicle) {
+    public boolean isHistoryLoaded() {
+        return historyLoader == null || historyLoader.isDone();
+    }
+
+    // Blocks until the history is in memory, loading it on this thread if nobody has started yet
+    public void awaitHistory() {
+        if (historyLoader == null) {
+            return;
+        }
+        historyLoader.run();
+        try {
+            historyLoader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error loading rental records: " + e.getCause().getMessage());
+        }
+    }
+
+    public DurableFiles.Durability getDurability() {
+        return storage.getDurability();
+    }
+
+    public void setDurability(DurableFiles.Durability durability) {
+        try {
+            storage.setDurability(durability);
+        } catch (IOException e) {
+            System.err.println("Error syncing data files: " + e.getMessage());
+        }
+    }
+
+    public void addListener(RentalListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RentalListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Composite search over the bitmap indexes, see VehicleFilter
+    public List<Vehicle> searchVehicles(VehicleFilter filter) {
+        return vehicleIndex.search(filter);
+    }
+
+    public int countVehicles(VehicleFilter filter) {
+        return vehicleIndex.count(filter);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    private boolean rejectWrite() {
+        if (readOnly) {
+            log("Error: this rental system is a read-only replica.");
+        }
+        return readOnly;
+    }
+
+    // Per-operation console messages; load tests and batch runs turn them off
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    // Batch runs: rents and returns still update memory, the history and listeners right away, but the
+    // vehicle statuses are persisted once in endBatch() instead of after every operation. Records are
+    // still appended as they happen. Batches nest; only the outermost endBatch() writes.
+    public synchronized void beginBatch() {
+        if (batchDepth++ == 0) {
+            pendingStatus = new LinkedHashSet<>();
+        }
+    }
+
+    public synchronized void endBatch() {
+        if (batchDepth == 0 || --batchDepth > 0) {
+            return;
+        }
+        Set<Vehicle> changed = pendingStatus;
+        pendingStatus = null;
+        if (!changed.isEmpty()) {
+            try {
+                storage.saveVehicleStatuses(changed, vehicles);
+            } catch (IOException e) {
+                System.out.println("Error updating vehicles file: " + e.getMessage());
+            }
+        }
+    }
+
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    public synchronized boolean addVehicle(Vehicle vehicle) {
+        if (rejectWrite()) {
+            return false;
+        }
         if (findVehicleByPlate(vehicle.getLicensePlate()) != null) {
-            System.out.println("Error: Vehicle with plate " + vehicle.getLicensePlate() + " already exists.");
+            log("Error: Vehicle with plate " + vehicle.getLicensePlate() + " already exists.");
             return false; 
         }
+        if (!VehicleCodecs.isRegistered(vehicle)) {
+            log("Error: " + vehicle.getClass().getSimpleName() + " has no registered codec and cannot be stored.");
+            return false;
+        }
         vehicles.add(vehicle);
-        saveVehicle(vehicle); 
-        updateVehiclesFile();
-        System.out.println("Vehicle added successfully.");
+        indexVehicle(vehicle);
+        saveVehicle(vehicle);
+        for (RentalListener listener : listeners) {
+            listener.vehicleAdded(vehicle);
+        }
+        log("Vehicle added successfully.");
         return true;
     }
 
-    public boolean addCustomer(Customer customer) {
+    // Bulk path: skips duplicates and vehicles without a plate, then persists all new vehicles with one write
+    public synchronized int addVehicles(Collection<? extends Vehicle> newVehicles) {
+        if (rejectWrite()) {
+            return 0;
+        }
+        List<Vehicle> added = new ArrayList<>();
+        for (Vehicle vehicle : newVehicles) {
+            if (vehicle.getLicensePlate() == null || findVehicleByPlate(vehicle.getLicensePlate()) != null
+                    || !VehicleCodecs.isRegistered(vehicle)) {
+                continue;
+            }
+            indexVehicle(vehicle);
+            added.add(vehicle);
+        }
+        vehicles.addAll(added);
+        if (!added.isEmpty()) {
+            try {
+                storage.saveVehicles(added);
+            } catch (IOException e) {
+                System.err.println("Error saving vehicles: " + e.getMessage());
+            }
+        }
+        for (Vehicle vehicle : added) {
+            for (RentalListener listener : listeners) {
+                listener.vehicleAdded(vehicle);
+            }
+        }
+        return added.size();
+    }
+
+    public synchronized boolean addCustomer(Customer customer) {
+        if (rejectWrite()) {
+            return false;
+        }
         if (findCustomerById(customer.getCustomerId()) != null) {
-            System.out.println("Error: Customer with ID " + customer.getCustomerId() + " already exists.");
+            log("Error: Customer with ID " + customer.getCustomerId() + " already exists.");
             return false;
         }
         customers.add(customer);
+        customersById.put(customer.getCustomerId(), customer);
         saveCustomer(customer);  
-        System.out.println("Customer added successfully.");
+        for (RentalListener listener : listeners) {
+            listener.customerAdded(customer);
+        }
+        log("Customer added successfully.");
         return true;
     }
 
+    // Bulk path: skips duplicate IDs, then persists all new customers with one write
+    public synchronized int addCustomers(Collection<? extends Customer> newCustomers) {
+        if (rejectWrite()) {
+            return 0;
+        }
+        List<Customer> added = new ArrayList<>();
+        for (Customer customer : newCustomers) {
+            if (findCustomerById(customer.getCustomerId()) != null) {
+                continue;
+            }
+            customersById.put(customer.getCustomerId(), customer);
+            added.add(customer);
+        }
+        customers.addAll(added);
+        if (!added.isEmpty()) {
+            try {
+                storage.saveCustomers(added);
+            } catch (IOException e) {
+                System.err.println("Error saving customers: " + e.getMessage());
+            }
+        }
+        for (Customer customer : added) {
+            for (RentalListener listener : listeners) {
+                listener.customerAdded(customer);
+            }
+        }
+        return added.size();
+    }
+
     // Task 2-2 Converting rentVehicle method to boolean returning method for JUnit tests
-    public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+    public synchronized boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        return rentVehicle(vehicle, customer, date, amount, null);
+    }
+
+    // dueDate may be null, the vehicle is then due back DEFAULT_RENTAL_DAYS after date
+    public synchronized boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount, LocalDate dueDate) {
+        if (rejectWrite()) {
+            return false;
+        }
+        if (dueDate != null && dueDate.isBefore(date)) {
+            log("Error: due date " + dueDate + " is before the rental date.");
+            return false;
+        }
         if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
             vehicle.setStatus(Vehicle.VehicleStatus.RENTED);
-            updateVehiclesFile();
-            RentalRecord record = new RentalRecord(vehicle, customer, date, amount, "RENT");
+            RentalRecord record = new RentalRecord(vehicle, customer, date, amount, "RENT", dueDate);
             rentalHistory.addRecord(record);
             saveRecord(record);
-            saveVehicle(vehicle);
-            updateVehiclesFile();
-            System.out.println("Vehicle rented to " + customer.getCustomerName());
+            saveVehicleStatus(vehicle);
+            fireRecord(record, Vehicle.VehicleStatus.AVAILABLE);
+            log("Vehicle rented to " + customer.getCustomerName());
             return true;
         }
         else {
-            System.out.println("Vehicle is not available for renting.");
+            log("Vehicle is not available for renting.");
             return false;
         }
     }
 
     // Task 2-2 Converting returnVehicle method to boolean returning method for JUnit tests
-    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
+    public synchronized boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
+        if (rejectWrite()) {
+            return false;
+        }
         if (vehicle.getStatus() == Vehicle.VehicleStatus.RENTED) {
             vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
-            updateVehiclesFile();
             RentalRecord record = new RentalRecord(vehicle, customer, date, extraFees, "RETURN");
             rentalHistory.addRecord(record);
             saveRecord(record);
-            saveVehicle(vehicle);
-            updateVehiclesFile();
-            System.out.println("Vehicle returned by " + customer.getCustomerName());
+            saveVehicleStatus(vehicle);
+            fireRecord(record, Vehicle.VehicleStatus.RENTED);
+            log("Vehicle returned by " + customer.getCustomerName());
             return true;
         }
         else {
-            System.out.println("Vehicle is not rented.");
+            log("Vehicle is not rented.");
             return false;
         }
     }    
 
-    private void saveVehicle(Vehicle vehicle){
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(VEHICLES_FILE, false))){
-            String vehicleType = vehicle instanceof Car ? "Car": vehicle instanceof Motorcycle ? "Motorcycle" : "Truck";
+    // Replication: changes that already happened on the primary. They skip the read-only check
+    // and storage, but update the indexes and listeners like local changes do.
 
-            writer.write(String.format("%s, %s, %s, %s, %d, %s", vehicleType, vehicle.getLicensePlate(), vehicle.getMake(), vehicle.getModel(), vehicle.getYear(), vehicle.getStatus()));
+    synchronized void applyVehicle(Vehicle vehicle) {
+        Vehicle existing = findVehicleByPlate(vehicle.getLicensePlate());
+        if (existing != null) {
+            applyStatus(existing, vehicle.getStatus());
+            return;
+        }
+        vehicles.add(vehicle);
+        indexVehicle(vehicle);
+        for (RentalListener listener : listeners) {
+            listener.vehicleAdded(vehicle);
+        }
+    }
 
-            if (vehicle instanceof Car){
-                writer.write("," + ((Car) vehicle).getNumSeats());
-            }
-            else if (vehicle instanceof Motorcycle){
-                writer.write("," + ((Motorcycle) vehicle).hasSidecar());
-            }
-            else if (vehicle instanceof Truck){
-                writer.write("," + ((Truck) vehicle).getCargoCapacity());
+    synchronized void applyCustomer(Customer customer) {
+        if (customersById.putIfAbsent(customer.getCustomerId(), customer) == null) {
+            customers.add(customer);
+            for (RentalListener listener : listeners) {
+                listener.customerAdded(customer);
             }
+        }
+    }
+
+    synchronized void applyRecord(RentalRecord record) {
+        rentalHistory.addRecord(record);
+        for (RentalListener listener : listeners) {
+            listener.recordAdded(record);
+        }
+    }
+
+    synchronized void applyStatus(Vehicle vehicle, Vehicle.VehicleStatus status) {
+        Vehicle.VehicleStatus oldStatus = vehicle.getStatus();
+        if (oldStatus == status) {
+            return;
+        }
+        vehicle.setStatus(status);
+        for (RentalListener listener : listeners) {
+            listener.statusChanged(vehicle, oldStatus);
+        }
+    }
+
+    private void fireRecord(RentalRecord record, Vehicle.VehicleStatus oldStatus) {
+        for (RentalListener listener : listeners) {
+            listener.recordAdded(record);
+            listener.statusChanged(record.getVehicle(), oldStatus);
+        }
+    }
 
-            writer.newLine();
+    private void saveVehicle(Vehicle vehicle){
+        try {
+            storage.saveVehicles(Collections.singletonList(vehicle));
         }
         catch (IOException e){
             System.err.println("Error saving vehicle: " + e.getMessage());
         }
     }
 
+    private void saveVehicleStatus(Vehicle vehicle) {
+        if (pendingStatus != null) {
+            pendingStatus.add(vehicle);
+            return;
+        }
+        try {
+            storage.saveVehicleStatus(vehicle, vehicles);
+        } catch (IOException e) {
+            System.out.println("Error updating vehicles file: " + e.getMessage());
+        }
+    }
+
     private void saveCustomer(Customer customer) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(CUSTOMERS_FILE, true))) {
-            writer.write(String.format("%s,%s",
-                customer.getCustomerId(),
-                customer.getCustomerName()));
-            writer.newLine();
+        try {
+            storage.saveCustomers(Collections.singletonList(customer));
         } catch (IOException e) {
             System.err.println("Error saving customer: " + e.getMessage());
         }
     }
 
     private void saveRecord(RentalRecord record) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(RECORDS_FILE, true))) {
-            writer.write(String.format("%s,%s,%s,%.2f,%s",
-                record.getVehicle().getLicensePlate(),
-                String.valueOf(record.getCustomer().getCustomerId()), 
-                record.getDate(),
-                record.getAmount(),
-                record.getTransactionType()));
-            writer.newLine();
+        try {
+            storage.saveRecord(record);
         } catch (IOException e) {
             System.err.println("Error saving rental record: " + e.getMessage());
         }
@@ -155,53 +503,46 @@ public class RentalSystem {
     private void loadData(){
         loadVehicles();
         loadCustomers();
-        loadRentalRecords();
+        if (historyLoading == HistoryLoading.EAGER) {
+            loadRentalRecords();
+            return;
+        }
+
+        // Records only reference vehicles and customers that exist now, so the loader works on snapshots.
+        // It reads only the bytes on disk at start-up: rentals made meanwhile are already in memory
+        // and the loaded records are put in front of them.
+        Map<String, Vehicle> vehicleSnapshot = new HashMap<>(vehiclesByPlate);
+        Map<String, Customer> customerSnapshot = new HashMap<>(customersById);
+        long recordsMark;
+        try {
+            recordsMark = storage.recordsMark();
+        } catch (IOException e) {
+            System.err.println("Error loading rental records: " + e.getMessage());
+            return;
+        }
+        rentalHistory.startLoading();
+        historyLoader = new FutureTask<>(() -> {
+            rentalHistory.prependRecords(storage.loadRecords(vehicleSnapshot, customerSnapshot, recordsMark),
+                storage.loadCheckpoints());
+            return null;
+        });
+        if (historyLoading == HistoryLoading.BACKGROUND) {
+            Thread loader = new Thread(historyLoader, "rental-history-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
     }
 
     private void loadVehicles(){
-        try (BufferedReader reader = new BufferedReader(new FileReader(VEHICLES_FILE))){
-
-            String line;
-            while ((line = reader.readLine()) != null){
-                String[] parts = line.split(",");
-                if (parts.length >= 6){
-                    String type = parts[0].trim();
-                    String plate = parts[1].trim();
-                    String make = parts[2].trim();
-                    String model = parts[3].trim();
-                    int year = Integer.parseInt(parts[4].trim());
-                    Vehicle.VehicleStatus status = Vehicle.VehicleStatus.valueOf(parts[5].trim());
-
-                    Vehicle vehicle;
-                    switch (type){
-                        case "Car":
-                            int seats = Integer.parseInt(parts[6].trim());
-                            vehicle = new Car(make, model, year, seats);
-                            break;
-                        case "Motorcycle":
-                            boolean sidecar = Boolean.parseBoolean(parts[6].trim());
-                            vehicle = new Motorcycle(make, model, year, sidecar);
-                            break;
-                        case "Truck":
-                            double cargoCapacity = Double.parseDouble(parts[6].trim());
-                            vehicle = new Truck(make, model, year, cargoCapacity);
-                            break;
-                        default:
-                            continue;
-                    }
-                    
-                    // Task 2-1 Try and catch for invalid license plate
-                    try {
-                    	vehicle.setLicensePlate(plate);
-                        vehicle.setStatus(status);
-                        vehicles.add(vehicle);
-                    }
-                    catch(IllegalArgumentException e) {
-                    	System.out.println("Vehicle not added from loadVehicles() method.");
-                    }
-                    
+        try {
+            List<Vehicle> loaded = new ArrayList<>();
+            for (Vehicle vehicle : storage.loadVehicles()) {
+                if (findVehicleByPlate(vehicle.getLicensePlate()) == null) {
+                    loaded.add(vehicle);
+                    indexVehicle(vehicle);
                 }
             }
+            vehicles.addAll(loaded);
         }
         catch (IOException e){
             System.err.println("Error loading vehicles: " + e.getMessage());
@@ -209,58 +550,301 @@ public class RentalSystem {
     }
 
     private void loadCustomers() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(CUSTOMERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    String id = parts[0].trim();
-                    String name = parts[1].trim();
-                    customers.add(new Customer(id, name));
-                }
+        try {
+            List<Customer> loaded = storage.loadCustomers();
+            for (Customer customer : loaded) {
+                customersById.putIfAbsent(customer.getCustomerId(), customer);
             }
+            customers.addAll(loaded);
         } catch (IOException e) {
             System.err.println("Error loading customers: " + e.getMessage());
         }
     }
 
     private void loadRentalRecords() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(RECORDS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String plate = parts[0].trim();
-                    String customerId = parts[1].trim();
-                    LocalDate date = LocalDate.parse(parts[2].trim());
-                    double amount = Double.parseDouble(parts[3].trim());
-                    String transactionType = parts[4].trim();
-
-                    Vehicle vehicle = findVehicleByPlate(plate);
-                    Customer customer = findCustomerById(String.valueOf(customerId));
-
-                    if (vehicle != null && customer != null) {
-                        RentalRecord record = new RentalRecord(vehicle, customer, date, amount, transactionType);
-                        rentalHistory.addRecord(record);
-                    }
-                }
-            }
+        try {
+            rentalHistory.prependRecords(storage.loadRecords(vehiclesByPlate, customersById, storage.recordsMark()),
+                storage.loadCheckpoints());
         } catch (IOException e) {
             System.err.println("Error loading rental records: " + e.getMessage());
         }
     }
 
+    // Folds closed rentals that ended more than retentionDays ago into summary lines.
+    // The in-memory history is left as it is; only the file and the next start-up get smaller.
+    public synchronized RecordCompactor.Result compactRecords(int retentionDays, boolean archive) {
+        if (rejectWrite()) {
+            return null;
+        }
+        awaitHistory();
+        try {
+            RecordCompactor.Result result = storage.compactRecords(LocalDate.now().minusDays(retentionDays), archive);
+            if (!result.isSupported()) {
+                System.out.println(result);
+            }
+            return result;
+        } catch (IOException e) {
+            System.err.println("Error compacting rental records: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Built from the open rentals in the history the first time overdue rentals are asked for,
+    // then kept current as a listener
+    private synchronized OverdueMonitor overdueMonitor() {
+        if (overdueMonitor == null) {
+            OverdueMonitor monitor = new OverdueMonitor(LocalDate.now(), DEFAULT_RENTAL_DAYS);
+            for (RentalRecord rent : getRentalHistory().getOpenRentals()) {
+                monitor.recordAdded(rent);
+            }
+            addListener(monitor);
+            overdueMonitor = monitor;
+        }
+        return overdueMonitor;
+    }
+
+    // Daily occupancy per vehicle type. Built by replaying the history the first time it is asked for,
+    // then kept current as a listener on every rent and return.
+    public synchronized OccupancyIndex getOccupancy() {
+        if (occupancyIndex == null) {
+            OccupancyIndex index = new OccupancyIndex();
+            replayHistory(index);
+            addListener(index);
+            occupancyIndex = index;
+        }
+        return occupancyIndex;
+    }
+
+    // Rentals, rented days and last return per vehicle, built and kept current like getOccupancy()
+    public synchronized VehicleUsage getUsage() {
+        if (vehicleUsage == null) {
+            VehicleUsage usage = new VehicleUsage();
+            replayHistory(usage);
+            addListener(usage);
+            vehicleUsage = usage;
+        }
+        return vehicleUsage;
+    }
+
+    // Queues of the available vehicles by usage and idle time. Registered after getUsage(), so a
+    // returned vehicle is queued again with the counters of the rental that just ended.
+    public synchronized VehicleAllocator getAllocator() {
+        if (allocator == null) {
+            VehicleAllocator queues = new VehicleAllocator(getUsage());
+            for (Vehicle vehicle : vehicles) {
+                queues.add(vehicle);
+            }
+            addListener(queues);
+            allocator = queues;
+        }
+        return allocator;
+    }
+
+    // Rents out the least used (or longest idle, see the request's policy) available vehicle that
+    // matches the request. Returns the vehicle, or null if none matches or the rent fails.
+    public synchronized Vehicle rentBestVehicle(VehicleAllocator.Request request, Customer customer, LocalDate date, double amount) {
+        Vehicle vehicle = getAllocator().best(request);
+        if (vehicle == null) {
+            log("No available vehicle for " + request + ".");
+            return null;
+        }
+        return rentVehicle(vehicle, customer, date, amount) ? vehicle : null;
+    }
+
+    // Service urgency of every vehicle, built and kept current like getAllocator()
+    public synchronized MaintenanceScheduler getMaintenance() {
+        if (maintenance == null) {
+            Map<String, MaintenanceScheduler.ServicePoint> servicePoints = new HashMap<>();
+            try {
+                servicePoints = storage.loadServicePoints();
+            } catch (IOException e) {
+                System.err.println("Error loading service points: " + e.getMessage());
+            }
+            MaintenanceScheduler scheduler = new MaintenanceScheduler(getUsage(), serviceRentalInterval, serviceDayInterval, servicePoints);
+            for (Vehicle vehicle : vehicles) {
+                scheduler.add(vehicle);
+            }
+            addListener(scheduler);
+            maintenance = scheduler;
+        }
+        return maintenance;
+    }
+
+    // Sends every available vehicle that is due for service to MAINTENANCE, or OUTOFSERVICE when it
+    // is far past its interval, batchSize vehicles at a time. The due vehicles are picked without
+    // the system lock, which is only held to switch one batch, so rents go on between batches.
+    // Returns the number of vehicles taken out of service.
+    public int runMaintenance(int batchSize) {
+        MaintenanceScheduler scheduler = getMaintenance();
+        int total = 0;
+        while (true) {
+            List<Vehicle> due = scheduler.nextDue(batchSize);
+            int moved = due.isEmpty() ? 0 : sendToService(due);
+            total += moved;
+            if (moved == 0 || due.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    private synchronized int sendToService(List<Vehicle> due) {
+        if (rejectWrite()) {
+            return 0;
+        }
+        List<Vehicle> changed = new ArrayList<>();
+        for (Vehicle vehicle : due) {
+            // Rented again since it was picked; it stays due and comes up after its return
+            if (vehicle.getStatus() != Vehicle.VehicleStatus.AVAILABLE) {
+                continue;
+            }
+            vehicle.setStatus(maintenance.getUrgency(vehicle) >= MaintenanceScheduler.OUT_OF_SERVICE_URGENCY
+                ? Vehicle.VehicleStatus.OUTOFSERVICE : Vehicle.VehicleStatus.MAINTENANCE);
+            changed.add(vehicle);
+            for (RentalListener listener : listeners) {
+                listener.statusChanged(vehicle, Vehicle.VehicleStatus.AVAILABLE);
+            }
+        }
+        if (pendingStatus != null) {
+            pendingStatus.addAll(changed);
+        } else if (!changed.isEmpty()) {
+            try {
+                storage.saveVehicleStatuses(changed, vehicles);
+            } catch (IOException e) {
+                System.out.println("Error updating vehicles file: " + e.getMessage());
+            }
+        }
+        log("Vehicles sent to maintenance: " + changed.size());
+        return changed.size();
+    }
+
+    // Puts a serviced vehicle back into the fleet; its service urgency starts again from 0
+    public synchronized boolean completeMaintenance(Vehicle vehicle) {
+        if (rejectWrite()) {
+            return false;
+        }
+        Vehicle.VehicleStatus oldStatus = vehicle.getStatus();
+        if (oldStatus != Vehicle.VehicleStatus.MAINTENANCE && oldStatus != Vehicle.VehicleStatus.OUTOFSERVICE) {
+            log("Vehicle is not in maintenance.");
+            return false;
+        }
+        vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
+        saveVehicleStatus(vehicle);
+        // The next service is due counting from the usage now, also after a restart
+        VehicleUsage.Counters counters = getUsage().get(vehicle.getLicensePlate());
+        try {
+            storage.saveServicePoint(vehicle.getLicensePlate(),
+                new MaintenanceScheduler.ServicePoint(counters.getRentals(), counters.getRentedDays()));
+        } catch (IOException e) {
+            System.err.println("Error saving service point: " + e.getMessage());
+        }
+        for (RentalListener listener : listeners) {
+            listener.statusChanged(vehicle, oldStatus);
+        }
+        log("Vehicle " + vehicle.getLicensePlate() + " is back from maintenance.");
+        return true;
+    }
+
+    // Runs runMaintenance(batchSize) on a background thread at the given period
+    public synchronized void startMaintenanceChecks(long period, TimeUnit unit, int batchSize) {
+        if (maintenanceChecks != null) {
+            return;
+        }
+        maintenanceChecks = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "maintenance-checks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceChecks.scheduleAtFixedRate(() -> runMaintenance(batchSize), 0, period, unit);
+    }
+
+    private void replayHistory(RentalListener listener) {
+        RentalHistory history = getRentalHistory();
+        int size = history.size();
+        for (int from = 0; from < size; from += 65536) {
+            for (RentalRecord record : history.getRecords(from, from + 65536)) {
+                listener.recordAdded(record);
+            }
+        }
+    }
+
+    // Rental events for Flow subscribers. Created on first use; record offsets are positions in
+    // the history, so subscribers can replay from any earlier record.
+    public synchronized RentalEventPublisher getEvents() {
+        if (eventPublisher == null) {
+            RentalEventPublisher publisher = new RentalEventPublisher(this, RentalEventPublisher.DEFAULT_BUFFER_SIZE);
+            addListener(publisher);
+            eventPublisher = publisher;
+        }
+        return eventPublisher;
+    }
+
+    // Moves overdue detection forward to the given day. Listeners get rentalOverdue() for every
+    // rental that became overdue on the way; the same rentals are returned.
+    public synchronized List<RentalRecord> checkOverdue(LocalDate today) {
+        List<RentalRecord> newlyOverdue = overdueMonitor().advanceTo(today);
+        for (RentalRecord rent : newlyOverdue) {
+            for (RentalListener listener : listeners) {
+                listener.rentalOverdue(rent);
+            }
+        }
+        return newlyOverdue;
+    }
+
+    // Open RENT records of vehicles that are past their due date
+    public List<RentalRecord> getOverdueRentals() {
+        checkOverdue(LocalDate.now());
+        return overdueMonitor().getOverdue();
+    }
+
+    public boolean isOverdue(Vehicle vehicle) {
+        checkOverdue(LocalDate.now());
+        return overdueMonitor().isOverdue(vehicle.getLicensePlate());
+    }
+
+    public LocalDate getDueDate(RentalRecord rent) {
+        return overdueMonitor().dueDate(rent);
+    }
+
+    // Runs checkOverdue(today) on a background thread at the given period
+    public synchronized void startOverdueChecks(long period, TimeUnit unit) {
+        if (overdueChecks != null) {
+            return;
+        }
+        overdueChecks = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "overdue-checks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        overdueChecks.scheduleAtFixedRate(() -> checkOverdue(LocalDate.now()), 0, period, unit);
+    }
+
+    // Point-in-time fleet state rebuilt from the history: RENTED or AVAILABLE per plate at the end of the day
+    public Map<String, Vehicle.VehicleStatus> fleetStateAt(LocalDate date) {
+        Set<String> rented = getRentalHistory().getRentedPlatesAt(date);
+        Map<String, Vehicle.VehicleStatus> state = new LinkedHashMap<>();
+        for (Vehicle v : vehicles) {
+            state.put(v.getLicensePlate(), rented.contains(v.getLicensePlate())
+                ? Vehicle.VehicleStatus.RENTED
+                : Vehicle.VehicleStatus.AVAILABLE);
+        }
+        return state;
+    }
+
     public void displayVehicles(boolean onlyAvailable) {
-        System.out.println("|     Type         |\tPlate\t|\tMake\t|\tModel\t|\tYear\t|");
+        System.out.println("|     Type         |\tPlate\t|\tMake\t|\tModel\t|\tYear\t|\tDetails");
         System.out.println("---------------------------------------------------------------------------------");
          
+        StringBuilder row = new StringBuilder();
         for (Vehicle v : vehicles) {
             if (!onlyAvailable || v.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
-                String type = (v instanceof Car) ? "Car" : 
-                             (v instanceof Motorcycle) ? "Motorcycle" :
-                             (v instanceof Truck) ? "Truck" : "Unknown";
-                System.out.println("|     " + type + "          |\t" + v.getLicensePlate() + "\t|\t" + 
-                    v.getMake() + "\t|\t" + v.getModel() + "\t|\t" + v.getYear() + "\t|\t");
+                row.setLength(0);
+                row.append("|     ").append(VehicleCodecs.typeName(v)).append("          |\t")
+                    .append(v.getLicensePlate()).append("\t|\t")
+                    .append(v.getMake()).append("\t|\t")
+                    .append(v.getModel()).append("\t|\t")
+                    .append(v.getYear()).append("\t|\t");
+                VehicleCodecs.details(v, row);
+                System.out.println(row);
             }
         }
         System.out.println();
@@ -273,50 +857,111 @@ public class RentalSystem {
     }
     
     public void displayRentalHistory() {
-        for (RentalRecord record : rentalHistory.getRentalHistory()) {
+        for (RentalRecord record : getRentalHistory().getRentalHistory()) {
             System.out.println(record.toString());
         }
     }
     
     public Vehicle findVehicleByPlate(String plate) {
-        for (Vehicle v : vehicles) {
-            if (v.getLicensePlate().equalsIgnoreCase(plate)) {
-                return v;
-            }
+        if (plate == null) {
+            return null;
         }
-        return null;
+        return vehiclesByPlate.get(plate.toUpperCase());
     }
     
     public Customer findCustomerById(String id) {
-        for (Customer c : customers)
-            if (c.getCustomerId().equals(id))
-                return c;
-        return null;
+        if (id == null) {
+            return null;
+        }
+        return customersById.get(id);
     }
 
-    private void updateVehiclesFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(VEHICLES_FILE, false))) {
-            for (Vehicle v : vehicles) {
-                String type = "Unknown";
-                String extra = "";
+    private void indexVehicle(Vehicle vehicle) {
+        if (vehicle.getLicensePlate() != null) {
+            vehiclesByPlate.put(vehicle.getLicensePlate(), vehicle);
+        }
+    }
     
-                if (v instanceof Car) {
-                    type = "Car";
-                    extra = "," + ((Car) v).getNumSeats();
-                } else if (v instanceof Motorcycle) {
-                    type = "Motorcycle";
-                    extra = "," + ((Motorcycle) v).hasSidecar();
-                } else if (v instanceof Truck) {
-                    type = "Truck";
-                    extra = "," + ((Truck) v).getCargoCapacity();
+
+    // Independent RentalSystem instances, each with its own storage, so several can run side by side:
+    //   RentalSystem.builder().dataDirectory("data/run1").build()
+    //   RentalSystem.builder().inMemory().verbose(false).build()
+    // Without a storage choice the instance keeps everything in memory.
+    public static class Builder {
+        private String storageKind = "memory";
+        private String location;
+        private RentalStorage storage;
+        private HistoryLoading historyLoading = defaultHistoryLoading;
+        private DurableFiles.Durability durability;
+        private boolean verbose = true;
+        private int serviceRentals = MaintenanceScheduler.DEFAULT_RENTAL_INTERVAL;
+        private int serviceDays = MaintenanceScheduler.DEFAULT_DAY_INTERVAL;
+
+        // The text files (vehicles.txt, customers.txt, rental_records.txt) in the given directory
+        public Builder dataDirectory(String directory) {
+            return storage("text", directory);
+        }
+
+        // Any backend of RentalStorage.create(), e.g. ("binary", "data/run1") or ("jdbc", "jdbc:h2:mem:run1")
+        public Builder storage(String kind, String location) {
+            this.storageKind = kind;
+            this.location = location;
+            this.storage = null;
+            return this;
+        }
+
+        // An already opened storage; close() on the built system closes it
+        public Builder storage(RentalStorage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        public Builder inMemory() {
+            return storage("memory", null);
+        }
+
+        public Builder historyLoading(HistoryLoading historyLoading) {
+            this.historyLoading = historyLoading;
+            return this;
+        }
+
+        public Builder durability(DurableFiles.Durability durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        public Builder verbose(boolean verbose) {
+            this.verbose = verbose;
+            return this;
+        }
+
+        // A vehicle is due for service after this many rentals or rented days, whichever comes first
+        public Builder serviceIntervals(int rentals, int rentedDays) {
+            this.serviceRentals = rentals;
+            this.serviceDays = rentedDays;
+            return this;
+        }
+
+        public RentalSystem build() throws IOException {
+            RentalStorage opened = storage;
+            if (opened == null) {
+                boolean files = !storageKind.equalsIgnoreCase("memory") && !storageKind.equalsIgnoreCase("jdbc");
+                if (files) {
+                    if (location == null) {
+                        throw new IllegalArgumentException("The " + storageKind + " backend needs a data directory");
+                    }
+                    Files.createDirectories(Paths.get(location));
                 }
-    
-                writer.write(type + "," + v.getLicensePlate() + "," + v.getMake() + "," + v.getModel() + "," + v.getYear() + "," + v.getStatus() + extra);
-                writer.newLine();
+                opened = RentalStorage.create(storageKind, location);
             }
-        } catch (IOException e) {
-            System.out.println("Error updating vehicles file: " + e.getMessage());
+            RentalSystem rentalSystem = new RentalSystem(opened, historyLoading);
+            rentalSystem.setVerbose(verbose);
+            rentalSystem.serviceRentalInterval = serviceRentals;
+            rentalSystem.serviceDayInterval = serviceDays;
+            if (durability != null) {
+                rentalSystem.setDurability(durability);
+            }
+            return rentalSystem;
         }
     }
-    
-}
\ No newline at end of file
+}
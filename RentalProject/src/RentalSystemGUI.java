@@ -1,4 +1,5 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -9,6 +10,8 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class RentalSystemGUI extends Application {
@@ -18,7 +21,15 @@ public class RentalSystemGUI extends Application {
     private ObservableList<Customer> customers = FXCollections.observableArrayList();
     private ObservableList<RentalRecord> rentalHistory = FXCollections.observableArrayList();
 
+    // The history table only ever holds the current page; sorting and filtering run in the model
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private PagedHistoryModel historyModel = new PagedHistoryModel(rentalSystem);
+    private PagedHistoryModel.Query historyQuery = new PagedHistoryModel.Query();
+    private Pagination historyPages = new Pagination(1, 0);
+    private Label historyStatus = new Label();
+
     public static void main(String[] args) {
+        RentalSystem.setHistoryLoading(RentalSystem.HistoryLoading.BACKGROUND);
         launch(args);
     }
 
@@ -42,6 +53,11 @@ public class RentalSystemGUI extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        historyModel.close();
+    }
+
     private Tab createVehicleTab() {
         Tab tab = new Tab("Manage Vehicles");
         GridPane grid = new GridPane();
@@ -254,11 +270,96 @@ public class RentalSystemGUI extends Application {
 
         table.getColumns().addAll(typeCol, vehicleCol, customerCol, dateCol, amountCol);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
-        
-        tab.setContent(table);
+
+        // Clicking a header sorts the whole history in the model, not just the rows on screen
+        Map<TableColumn<RentalRecord, ?>, PagedHistoryModel.SortKey> sortKeys = new HashMap<>();
+        sortKeys.put(typeCol, PagedHistoryModel.SortKey.TYPE);
+        sortKeys.put(vehicleCol, PagedHistoryModel.SortKey.PLATE);
+        sortKeys.put(customerCol, PagedHistoryModel.SortKey.CUSTOMER);
+        sortKeys.put(dateCol, PagedHistoryModel.SortKey.DATE);
+        sortKeys.put(amountCol, PagedHistoryModel.SortKey.AMOUNT);
+        table.setSortPolicy(t -> {
+            PagedHistoryModel.SortKey key = PagedHistoryModel.SortKey.NONE;
+            boolean ascending = true;
+            if (!t.getSortOrder().isEmpty()) {
+                TableColumn<RentalRecord, ?> column = t.getSortOrder().get(0);
+                key = sortKeys.get(column);
+                ascending = column.getSortType() == TableColumn.SortType.ASCENDING;
+            }
+            // Also called when a page is swapped in; only a changed order needs a new view
+            if (key != historyQuery.getSortKey() || ascending != historyQuery.isAscending()) {
+                historyQuery = historyQuery.withSort(key, ascending);
+                reloadHistory();
+            }
+            return true;
+        });
+
+        DatePicker fromPicker = new DatePicker();
+        DatePicker toPicker = new DatePicker();
+        TextField plateFilter = new TextField();
+        plateFilter.setPromptText("Plate");
+        TextField customerFilter = new TextField();
+        customerFilter.setPromptText("Customer");
+        ComboBox<String> typeFilter = new ComboBox<>(FXCollections.observableArrayList(
+            "All", "RENT", "RETURN"
+        ));
+        typeFilter.setValue("All");
+
+        Button filterBtn = new Button("Apply Filter");
+        filterBtn.setOnAction(e -> {
+            historyQuery = historyQuery.withFilter(
+                fromPicker.getValue(),
+                toPicker.getValue(),
+                plateFilter.getText(),
+                customerFilter.getText(),
+                "All".equals(typeFilter.getValue()) ? null : typeFilter.getValue()
+            );
+            historyPages.setCurrentPageIndex(0);
+            reloadHistory();
+        });
+
+        historyPages.setPageFactory(page -> {
+            showHistoryPage(page);
+            return new Region();
+        });
+
+        VBox layout = new VBox(10,
+            new HBox(10, new Label("From:"), fromPicker, new Label("To:"), toPicker,
+                plateFilter, customerFilter, typeFilter, filterBtn),
+            table,
+            new HBox(15, historyPages, historyStatus)
+        );
+        layout.setPadding(new Insets(15));
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        tab.setContent(layout);
         return tab;
     }
 
+    // Rebuilds the history view off the FX thread and shows the current page when it is ready
+    private void reloadHistory() {
+        historyStatus.setText("Loading history...");
+        historyModel.refresh(historyQuery).whenComplete((rows, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                historyStatus.setText("History could not be loaded: " + error.getMessage());
+                return;
+            }
+            if (rows < 0) {
+                return; // a newer filter or sort is already on its way
+            }
+            int pages = historyModel.getPageCount(HISTORY_PAGE_SIZE);
+            int page = Math.min(historyPages.getCurrentPageIndex(), pages - 1);
+            historyPages.setPageCount(pages);
+            historyPages.setCurrentPageIndex(page);
+            showHistoryPage(page);
+            historyStatus.setText(rows + " records");
+        }));
+    }
+
+    private void showHistoryPage(int page) {
+        rentalHistory.setAll(historyModel.getPage(page, HISTORY_PAGE_SIZE));
+    }
+
     private Vehicle createVehicle(String type, String make, String model, int year, 
             String plate, String spec) throws Exception {
 		if (type == null) throw new Exception("Please select a vehicle type");
@@ -291,7 +392,7 @@ public class RentalSystemGUI extends Application {
             .collect(Collectors.toList()));
 
         customers.setAll(rentalSystem.getCustomers());
-        rentalHistory.setAll(rentalSystem.getRentalHistory().getRentalHistory());
+        reloadHistory();
     }
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
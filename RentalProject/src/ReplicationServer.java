@@ -0,0 +1,217 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Streams a primary RentalSystem to read replicas (RentalReplica) over TCP. A follower first gets
+// a snapshot of the fleet, customers and history, then every change as it happens, one line each:
+//   V,<vehicle as in vehicles.txt>   C,id,name   R,plate,customerId,date,amount,type[,due]   S,plate,status
+// Changes are queued per follower and written by that follower's own thread, so rentals never wait
+// on the network. The snapshot is taken on that thread too: the system lock is only held to copy the
+// fleet and customer lists and note the history size, the encoding happens after it is released. A follower more than MAX_BACKLOG events behind is dropped and must reconnect.
+// Followers are not authenticated, so the server only listens on the loopback interface unless
+// another address is given explicitly; only do that on a trusted network.
+public class ReplicationServer implements RentalListener, Closeable {
+    static final String READY = "READY";
+    private static final int MAX_BACKLOG = 1000000;
+    private static final int SNAPSHOT_PAGE = 10000;
+
+    private RentalSystem rentalSystem;
+    private ServerSocket serverSocket;
+    private List<Follower> followers = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private ReplicationServer(RentalSystem rentalSystem, ServerSocket serverSocket) {
+        this.rentalSystem = rentalSystem;
+        this.serverSocket = serverSocket;
+    }
+
+    // Port 0 picks a free port, see getPort(). Listens on the loopback interface only.
+    public static ReplicationServer start(RentalSystem rentalSystem, int port) throws IOException {
+        return start(rentalSystem, InetAddress.getLoopbackAddress(), port);
+    }
+
+    // Listens on the given address, e.g. a LAN interface or 0.0.0.0 for all of them
+    public static ReplicationServer start(RentalSystem rentalSystem, InetAddress bindAddress, int port) throws IOException {
+        ReplicationServer server = new ReplicationServer(rentalSystem, new ServerSocket(port, 50, bindAddress));
+        rentalSystem.addListener(server);
+        Thread acceptor = new Thread(server::acceptFollowers, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                new Follower(serverSocket.accept()).start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void vehicleAdded(Vehicle vehicle) {
+        publish(vehicleEvent(vehicle));
+    }
+
+    @Override
+    public void customerAdded(Customer customer) {
+        publish(customerEvent(customer));
+    }
+
+    @Override
+    public void recordAdded(RentalRecord record) {
+        publish(recordEvent(record));
+    }
+
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+        publish("S," + vehicle.getLicensePlate() + "," + vehicle.getStatus());
+    }
+
+    private void publish(String event) {
+        for (Follower follower : followers) {
+            if (!follower.queue.offer(event)) {
+                System.err.println("Replication: dropping follower " + follower.name + ", too far behind.");
+                follower.close();
+            }
+        }
+    }
+
+    static String vehicleEvent(Vehicle vehicle) {
+        return "V," + VehicleCodecs.encode(vehicle);
+    }
+
+    static String customerEvent(Customer customer) {
+        return "C," + customer.getCustomerId() + "," + customer.getCustomerName();
+    }
+
+    static String recordEvent(RentalRecord record) {
+        return "R," + record.getVehicle().getLicensePlate() + "," + record.getCustomer().getCustomerId() + ","
+            + record.getDate() + "," + record.getAmount() + "," + record.getTransactionType()
+            + (record.getDueDate() != null ? "," + record.getDueDate() : "");
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        rentalSystem.removeListener(this);
+        serverSocket.close();
+        for (Follower follower : followers) {
+            follower.close();
+        }
+    }
+
+    private class Follower {
+        private final Socket socket;
+        private final String name;
+        private final BlockingQueue<String> queue = new LinkedBlockingQueue<>(MAX_BACKLOG);
+        private Thread writer;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        void start() {
+            writer = new Thread(this::stream, "replication-" + name);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private void stream() {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                rentalSystem.awaitHistory();
+                RentalHistory history = rentalSystem.getRentalHistory();
+                List<Vehicle> vehicles;
+                List<Customer> customers;
+                int historySize;
+                // Holding the system lock keeps changes out while the copy is taken; every change
+                // after it lands in the queue. Records are only appended, so the first historySize
+                // records stay the ones counted here.
+                synchronized (rentalSystem) {
+                    vehicles = new ArrayList<>(rentalSystem.getVehicles());
+                    customers = new ArrayList<>(rentalSystem.getCustomers());
+                    historySize = history.size();
+                    followers.add(this);
+                }
+                if (!running) {
+                    // The server closed before this follower was in the list
+                    return;
+                }
+                for (Vehicle vehicle : vehicles) {
+                    writeLine(out, vehicleEvent(vehicle));
+                }
+                for (Customer customer : customers) {
+                    writeLine(out, customerEvent(customer));
+                }
+                for (int from = 0; from < historySize; from += SNAPSHOT_PAGE) {
+                    for (RentalRecord record : history.getRecords(from, Math.min(from + SNAPSHOT_PAGE, historySize))) {
+                        writeLine(out, recordEvent(record));
+                    }
+                }
+                writeLine(out, READY);
+                out.flush();
+                while (!socket.isClosed()) {
+                    String event = queue.poll();
+                    if (event == null) {
+                        out.flush();
+                        event = queue.take();
+                    }
+                    writeLine(out, event);
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("Replication: follower " + name + " disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void writeLine(Writer out, String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+        }
+
+        void close() {
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.err.println("Replication: " + e.getMessage());
+            }
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+}
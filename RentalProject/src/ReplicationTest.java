@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// A primary and a read replica in the same JVM, talking over a loopback socket on a free port
+class ReplicationTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    @Test
+    void testReplicaFollowsPrimary() throws Exception {
+        try (RentalSystem primary = RentalSystem.builder().inMemory().verbose(false).build()) {
+            Customer customer = new Customer("R1", "Replica Customer");
+            primary.addCustomer(customer);
+            for (int i = 0; i < 3; i++) {
+                Vehicle vehicle = new Car("Toyota", "Corolla", 2020, 5);
+                vehicle.setLicensePlate(String.format("REP%03d", i));
+                primary.addVehicle(vehicle);
+            }
+            assertTrue(primary.rentVehicle(primary.findVehicleByPlate("REP000"), customer, DAY, 40.0));
+
+            try (ReplicationServer server = ReplicationServer.start(primary, 0)) {
+                assertTrue(server.getAddress().isLoopbackAddress(), "Remote binding has to be asked for");
+                try (RentalReplica replica = RentalReplica.connect(server.getAddress().getHostAddress(), server.getPort())) {
+                    assertTrue(replica.awaitSnapshot(10, TimeUnit.SECONDS));
+                    RentalSystem copy = replica.getRentalSystem();
+                    copy.setVerbose(false);
+                    assertEquals(3, copy.getVehicles().size());
+                    assertEquals(1, copy.getCustomers().size());
+                    assertEquals(1, copy.getRentalHistory().size());
+                    assertEquals(Vehicle.VehicleStatus.RENTED, copy.findVehicleByPlate("REP000").getStatus());
+
+                    // Changes after the snapshot stream in
+                    assertTrue(primary.returnVehicle(primary.findVehicleByPlate("REP000"), customer, DAY.plusDays(2), 0.0));
+                    assertTrue(primary.rentVehicle(primary.findVehicleByPlate("REP001"), customer, DAY.plusDays(2), 40.0));
+                    long deadline = System.currentTimeMillis() + 10000;
+                    while ((copy.getRentalHistory().size() < 3
+                            || copy.findVehicleByPlate("REP001").getStatus() != Vehicle.VehicleStatus.RENTED)
+                            && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(10);
+                    }
+                    assertEquals(3, copy.getRentalHistory().size());
+                    assertEquals(Vehicle.VehicleStatus.AVAILABLE, copy.findVehicleByPlate("REP000").getStatus());
+                    assertEquals(Vehicle.VehicleStatus.RENTED, copy.findVehicleByPlate("REP001").getStatus());
+                    assertEquals(1, server.getFollowerCount());
+
+                    // The replica refuses changes of its own
+                    assertFalse(copy.rentVehicle(copy.findVehicleByPlate("REP002"), copy.findCustomerById("R1"), DAY, 40.0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFollowersAttachIndependently() throws Exception {
+        try (RentalSystem primary = RentalSystem.builder().inMemory().verbose(false).build()) {
+            Customer customer = new Customer("R2", "Replica Customer");
+            primary.addCustomer(customer);
+            for (int i = 0; i < 50; i++) {
+                Vehicle vehicle = new Car("Toyota", "Corolla", 2020, 5);
+                vehicle.setLicensePlate(String.format("FOL%03d", i));
+                primary.addVehicle(vehicle);
+                assertTrue(primary.rentVehicle(vehicle, customer, DAY, 40.0));
+            }
+
+            try (ReplicationServer server = ReplicationServer.start(primary, 0);
+                 RentalReplica first = RentalReplica.connect(server.getAddress().getHostAddress(), server.getPort());
+                 RentalReplica second = RentalReplica.connect(server.getAddress().getHostAddress(), server.getPort())) {
+                // A rental while the followers take their snapshots reaches both, exactly once
+                assertTrue(primary.returnVehicle(primary.findVehicleByPlate("FOL000"), customer, DAY.plusDays(1), 0.0));
+                assertTrue(first.awaitSnapshot(10, TimeUnit.SECONDS));
+                assertTrue(second.awaitSnapshot(10, TimeUnit.SECONDS));
+                for (RentalReplica replica : new RentalReplica[] {first, second}) {
+                    RentalSystem copy = replica.getRentalSystem();
+                    long deadline = System.currentTimeMillis() + 10000;
+                    // The status change follows its record
+                    while ((copy.getRentalHistory().size() < 51
+                            || copy.findVehicleByPlate("FOL000").getStatus() != Vehicle.VehicleStatus.AVAILABLE)
+                            && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(10);
+                    }
+                    assertEquals(50, copy.getVehicles().size());
+                    assertEquals(51, copy.getRentalHistory().size());
+                    assertEquals(Vehicle.VehicleStatus.AVAILABLE, copy.findVehicleByPlate("FOL000").getStatus());
+                    assertEquals(Vehicle.VehicleStatus.RENTED, copy.findVehicleByPlate("FOL049").getStatus());
+                }
+                assertEquals(2, server.getFollowerCount());
+            }
+        }
+    }
+}
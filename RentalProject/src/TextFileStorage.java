@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+// The original comma-separated text files: vehicles.txt, customers.txt and rental_records.txt
+public class TextFileStorage implements RentalStorage {
+    private String vehiclesFile;
+    private String customersFile;
+    private String recordsFile;
+    private String recordsArchiveFile;
+    private String checkpointsFile;
+    private String servicePointsFile;
+    private DurableFiles files;
+
+    public TextFileStorage(String directory, DurableFiles files) {
+        this.vehiclesFile = Paths.get(directory, "vehicles.txt").toString();
+        this.customersFile = Paths.get(directory, "customers.txt").toString();
+        this.recordsFile = Paths.get(directory, "rental_records.txt").toString();
+        this.recordsArchiveFile = Paths.get(directory, "rental_records_archive.txt").toString();
+        this.checkpointsFile = Paths.get(directory, "fleet_checkpoints.txt").toString();
+        this.servicePointsFile = Paths.get(directory, "service_points.txt").toString();
+        this.files = files;
+    }
+
+    @Override
+    public List<Vehicle> loadVehicles() throws IOException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        Set<String> plates = new HashSet<>();
+        if (!Files.exists(Paths.get(vehiclesFile))) {
+            return vehicles;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(vehiclesFile))){
+
+            String line;
+            while ((line = reader.readLine()) != null){
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                // Task 2-1 Try and catch for invalid license plate
+                try {
+                    Vehicle vehicle = VehicleCodecs.decode(line);
+                    if (plates.add(vehicle.getLicensePlate())) {
+                        vehicles.add(vehicle);
+                    }
+                }
+                catch(IllegalArgumentException e) {
+                	System.out.println("Vehicle not added from loadVehicles() method.");
+                }
+            }
+        }
+        return vehicles;
+    }
+
+    @Override
+    public List<Customer> loadCustomers() throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        if (!Files.exists(Paths.get(customersFile))) {
+            return customers;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(customersFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", 2);
+                if (parts.length == 2) {
+                    String id = parts[0].trim();
+                    String name = parts[1].trim();
+                    customers.add(new Customer(id, name));
+                }
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public long recordsMark() {
+        return Paths.get(recordsFile).toFile().length();
+    }
+
+    @Override
+    public List<RentalRecord> loadRecords(Map<String, Vehicle> vehicleIndex, Map<String, Customer> customerIndex, long mark) throws IOException {
+        RecordCompactor.Replay records = new RecordCompactor.Replay();
+        if (!Files.exists(Paths.get(recordsFile))) {
+            return records.finish();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new LimitedInputStream(Files.newInputStream(Paths.get(recordsFile)), mark), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                // plate,customerId,date,amount,type[,due date]
+                if (parts.length == 5 || (parts.length == 6 && parts[4].trim().equals("RENT"))) {
+                    String plate = parts[0].trim();
+                    String customerId = parts[1].trim();
+                    LocalDate date = LocalDate.parse(parts[2].trim());
+                    double amount = Double.parseDouble(parts[3].trim());
+                    String transactionType = parts[4].trim();
+                    LocalDate dueDate = parts.length == 6 ? LocalDate.parse(parts[5].trim()) : null;
+
+                    Vehicle vehicle = vehicleIndex.get(plate.toUpperCase());
+                    Customer customer = customerIndex.get(customerId);
+
+                    if (vehicle != null && customer != null) {
+                        records.add(new RentalRecord(vehicle, customer, date, amount, transactionType, dueDate));
+                    }
+                }
+                // Compacted rental: plate,customerId,start,end,total,SUMMARY is replayed as a RENT and a RETURN
+                else if (parts.length == 6 && parts[5].trim().equals(RecordCompactor.SUMMARY)) {
+                    Vehicle vehicle = vehicleIndex.get(parts[0].trim().toUpperCase());
+                    Customer customer = customerIndex.get(parts[1].trim());
+
+                    if (vehicle != null && customer != null) {
+                        records.addSummary(vehicle, customer, LocalDate.parse(parts[2].trim()),
+                            LocalDate.parse(parts[3].trim()), Double.parseDouble(parts[4].trim()));
+                    }
+                }
+            }
+        }
+        return records.finish();
+    }
+
+    // Appends new vehicles instead of rewriting the file
+    @Override
+    public void saveVehicles(Collection<? extends Vehicle> newVehicles) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Vehicle vehicle : newVehicles) {
+            lines.add(VehicleCodecs.encode(vehicle));
+        }
+        files.appendLines(vehiclesFile, lines);
+    }
+
+    // Rewrites the fleet through a temp file and an atomic rename, so a crash never leaves a partial file
+    @Override
+    public void saveVehicleStatus(Vehicle vehicle, Collection<Vehicle> fleet) throws IOException {
+        StringBuilder content = new StringBuilder(fleet.size() * 48);
+        for (Vehicle v : fleet) {
+            VehicleCodecs.encode(v, content);
+            content.append(System.lineSeparator());
+        }
+        files.replace(vehiclesFile, content);
+    }
+
+    // The file is rewritten from the whole fleet anyway, so once is enough
+    @Override
+    public void saveVehicleStatuses(Collection<Vehicle> changed, Collection<Vehicle> fleet) throws IOException {
+        if (!changed.isEmpty()) {
+            saveVehicleStatus(changed.iterator().next(), fleet);
+        }
+    }
+
+    @Override
+    public void saveCustomers(Collection<? extends Customer> newCustomers) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Customer customer : newCustomers) {
+            lines.add(String.format("%s,%s",
+                customer.getCustomerId(),
+                customer.getCustomerName()));
+        }
+        files.appendLines(customersFile, lines);
+    }
+
+    // Synchronized with compactRecords, which rewrites the file from what it read
+    @Override
+    public synchronized void saveRecord(RentalRecord record) throws IOException {
+        files.append(recordsFile, String.format(Locale.ROOT, "%s,%s,%s,%.2f,%s",
+            record.getVehicle().getLicensePlate(),
+            String.valueOf(record.getCustomer().getCustomerId()),
+            record.getDate(),
+            record.getAmount(),
+            record.getTransactionType())
+            + (record.getDueDate() != null ? "," + record.getDueDate() : ""));
+    }
+
+    @Override
+    public synchronized RecordCompactor.Result compactRecords(LocalDate cutoff, boolean archive) throws IOException {
+        return RecordCompactor.compact(recordsFile, archive ? recordsArchiveFile : null, cutoff, files);
+    }
+
+    @Override
+    public SortedMap<LocalDate, FleetCheckpoints.Checkpoint> loadCheckpoints() throws IOException {
+        return FleetCheckpoints.read(checkpointsFile);
+    }
+
+    @Override
+    public void saveCheckpoint(LocalDate day, FleetCheckpoints.Checkpoint checkpoint) throws IOException {
+        files.append(checkpointsFile, FleetCheckpoints.format(day, checkpoint));
+    }
+
+    @Override
+    public void dropCheckpoints(LocalDate from) throws IOException {
+        FleetCheckpoints.dropFrom(checkpointsFile, from, files);
+    }
+
+    @Override
+    public Map<String, MaintenanceScheduler.ServicePoint> loadServicePoints() throws IOException {
+        return MaintenanceScheduler.readServicePoints(servicePointsFile);
+    }
+
+    @Override
+    public void saveServicePoint(String plate, MaintenanceScheduler.ServicePoint point) throws IOException {
+        files.append(servicePointsFile, MaintenanceScheduler.format(plate, point));
+    }
+
+    @Override
+    public DurableFiles.Durability getDurability() {
+        return files.getDurability();
+    }
+
+    @Override
+    public void setDurability(DurableFiles.Durability durability) throws IOException {
+        files.setDurability(durability);
+    }
+
+    @Override
+    public void close() throws IOException {
+        files.sync();
+    }
+}
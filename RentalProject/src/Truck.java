@@ -11,6 +11,16 @@ public class Truck extends Vehicle implements Rentable {
         return cargoCapacity;
     }
 
+    @Override
+    public Attribute getAttribute() {
+        return Attribute.CARGO;
+    }
+
+    @Override
+    public double getAttributeValue() {
+        return cargoCapacity;
+    }
+
     @Override
     public String getInfo() {
         return super.getInfo() + " | Cargo Capacity: " + cargoCapacity;
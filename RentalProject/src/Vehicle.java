@@ -3,10 +3,14 @@ public abstract class Vehicle {
     private String make;
     private String model;
     private int year;
-    private VehicleStatus status;
+    private volatile VehicleStatus status;
 
     public enum VehicleStatus { AVAILABLE, RESERVED, RENTED, MAINTENANCE, OUTOFSERVICE }
 
+    // What rentals of this type are matched on (VehicleAllocator, VehicleIndex). A new type
+    // overrides getAttribute() and getAttributeValue() instead of being added to each of them.
+    public enum Attribute { NONE, SEATS, CARGO, SIDECAR }
+
     public Vehicle(String make, String model, int year) {
         this.make = capitalize(make);
         this.model = capitalize(model);
@@ -28,7 +32,7 @@ public abstract class Vehicle {
     }
     
     // Task 2-1: Create isValidPlate method to check if the plate number is in correct format
-    private boolean isValidPlate(String plate) {
+    public static boolean isValidPlate(String plate) {
     	if (plate == null || plate.length() != 6) {
             return false;
         }
@@ -67,6 +71,11 @@ public abstract class Vehicle {
 
     public VehicleStatus getStatus() { return status; }
 
+    public Attribute getAttribute() { return Attribute.NONE; }
+
+    // Seats, cargo capacity, or 1 / 0 for with / without sidecar
+    public double getAttributeValue() { return 0.0; }
+
     public String getInfo() {
         return "| " + licensePlate + " | " + make + " | " + model + " | " + year + " | " + status + " |";
     }
@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Chooses which available vehicle to rent out for a request like "a car with 5+ seats", so that
+// wear spreads over the fleet instead of landing on the plates clerks happen to pick.
+// Available vehicles wait in priority queues per type and per value of the type's constraint
+// attribute (seats for cars, cargo capacity for trucks, sidecar for motorcycles). Each queue is
+// ordered both by usage and by idle time, with the usage a vehicle had when it became available:
+// its usage only changes while it is out, and it is queued again with the new counters on return.
+// A request looks at the head of every queue whose attribute value qualifies, so allocation costs
+// O(log n) for each distinct value, a handful in a real fleet, instead of a scan.
+public class VehicleAllocator implements RentalListener {
+    public enum Policy { LEAST_USED, LONGEST_IDLE }
+
+    // Fewest rented days, then fewest rentals, then the longest idle
+    private static final Comparator<Entry> BY_USAGE = Comparator.<Entry>comparingLong(e -> e.rentedDays)
+        .thenComparingInt(e -> e.rentals)
+        .thenComparingLong(e -> e.lastReturned)
+        .thenComparing(e -> e.plate);
+    // Back from its last rental the longest, never rented first
+    private static final Comparator<Entry> BY_IDLE = Comparator.<Entry>comparingLong(e -> e.lastReturned)
+        .thenComparingLong(e -> e.rentedDays)
+        .thenComparingInt(e -> e.rentals)
+        .thenComparing(e -> e.plate);
+
+    private final VehicleUsage usage;
+    private Map<String, Pool> pools = new HashMap<>(); // by lower-case type name, "" for any vehicle
+    private Map<Vehicle, Entry> queued = new IdentityHashMap<>();
+
+    // usage has to see a return before this allocator does, RentalSystem registers it first
+    VehicleAllocator(VehicleUsage usage) {
+        this.usage = usage;
+    }
+
+    // Queues the vehicle if it is available and not queued yet
+    public synchronized void add(Vehicle vehicle) {
+        if (vehicle.getStatus() != Vehicle.VehicleStatus.AVAILABLE || queued.containsKey(vehicle)) {
+            return;
+        }
+        Entry entry = new Entry(vehicle, usage.get(vehicle.getLicensePlate()));
+        queued.put(vehicle, entry);
+        pool("", Vehicle.Attribute.NONE).add(entry, 0.0);
+        Vehicle.Attribute attribute = vehicle.getAttribute();
+        double key = vehicle.getAttributeValue();
+        // A SportCar can be allocated both as "SportCar" and as "Car"
+        for (Class<?> type = vehicle.getClass(); type != null && type != Vehicle.class; type = type.getSuperclass()) {
+            pool(type.getSimpleName().toLowerCase(), attribute).add(entry, key);
+        }
+    }
+
+    public synchronized void remove(Vehicle vehicle) {
+        Entry entry = queued.remove(vehicle);
+        if (entry != null) {
+            for (Bucket bucket : entry.buckets) {
+                bucket.remove(entry);
+            }
+        }
+    }
+
+    // The vehicle the request should get, or null if no available vehicle qualifies.
+    // The vehicle stays queued until it is actually rented.
+    public synchronized Vehicle best(Request request) {
+        Pool pool = pools.get(request.type);
+        if (pool == null) {
+            return null;
+        }
+        if (request.attribute != Vehicle.Attribute.NONE && request.attribute != pool.attribute) {
+            throw new IllegalArgumentException((request.type.isEmpty() ? "Any vehicle" : request.type)
+                + " cannot be allocated by " + request.attribute.name().toLowerCase());
+        }
+        NavigableMap<Double, Bucket> buckets = request.attribute == Vehicle.Attribute.NONE
+            ? pool.buckets : pool.buckets.subMap(request.min, true, request.max, true);
+        Comparator<Entry> order = request.policy == Policy.LEAST_USED ? BY_USAGE : BY_IDLE;
+        Entry best = null;
+        for (Bucket bucket : buckets.values()) {
+            Entry head = (request.policy == Policy.LEAST_USED ? bucket.byUsage : bucket.byIdle).first();
+            if (best == null || order.compare(head, best) < 0) {
+                best = head;
+            }
+        }
+        return best == null ? null : best.vehicle;
+    }
+
+    public synchronized int availableCount() {
+        return queued.size();
+    }
+
+    @Override
+    public void vehicleAdded(Vehicle vehicle) {
+        add(vehicle);
+    }
+
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+        if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
+            add(vehicle);
+        } else {
+            remove(vehicle);
+        }
+    }
+
+    private Pool pool(String type, Vehicle.Attribute attribute) {
+        return pools.computeIfAbsent(type, t -> new Pool(attribute));
+    }
+
+    // What to allocate, e.g. Request.of("Car").seatsAtLeast(5) or Request.of("Truck").cargoAtLeast(2.5)
+    public static class Request {
+        private final String type;
+        private Vehicle.Attribute attribute = Vehicle.Attribute.NONE;
+        private double min = Double.NEGATIVE_INFINITY;
+        private double max = Double.POSITIVE_INFINITY;
+        private Policy policy = Policy.LEAST_USED;
+
+        private Request(String type) {
+            this.type = type;
+        }
+
+        public static Request any() {
+            return new Request("");
+        }
+
+        // Class name, case-insensitive: "Car" (includes sport cars), "SportCar", "Motorcycle", "Truck"
+        public static Request of(String type) {
+            return new Request(type.toLowerCase());
+        }
+
+        public Request seatsAtLeast(int seats) {
+            return constrain(Vehicle.Attribute.SEATS, seats, Double.POSITIVE_INFINITY);
+        }
+
+        public Request cargoAtLeast(double cargoCapacity) {
+            return constrain(Vehicle.Attribute.CARGO, cargoCapacity, Double.POSITIVE_INFINITY);
+        }
+
+        public Request sidecar(boolean sidecar) {
+            return constrain(Vehicle.Attribute.SIDECAR, sidecar ? 1.0 : 0.0, sidecar ? 1.0 : 0.0);
+        }
+
+        public Request by(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        private Request constrain(Vehicle.Attribute attribute, double min, double max) {
+            this.attribute = attribute;
+            this.min = min;
+            this.max = max;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            String vehicle = type.isEmpty() ? "any vehicle" : type;
+            switch (attribute) {
+                case SEATS:
+                    return vehicle + " with " + (int) min + "+ seats";
+                case CARGO:
+                    return vehicle + " with " + min + "+ cargo capacity";
+                case SIDECAR:
+                    return vehicle + (min > 0 ? " with" : " without") + " sidecar";
+                default:
+                    return vehicle;
+            }
+        }
+    }
+
+    private static class Pool {
+        private final Vehicle.Attribute attribute;
+        private NavigableMap<Double, Bucket> buckets = new TreeMap<>();
+
+        Pool(Vehicle.Attribute attribute) {
+            this.attribute = attribute;
+        }
+
+        void add(Entry entry, double key) {
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(this, k));
+            bucket.byUsage.add(entry);
+            bucket.byIdle.add(entry);
+            entry.buckets.add(bucket);
+        }
+    }
+
+    // The available vehicles of one type with one attribute value; dropped from its pool when empty
+    // so requests only ever look at values that have a vehicle
+    private static class Bucket {
+        private final Pool pool;
+        private final double key;
+        private TreeSet<Entry> byUsage = new TreeSet<>(BY_USAGE);
+        private TreeSet<Entry> byIdle = new TreeSet<>(BY_IDLE);
+
+        Bucket(Pool pool, double key) {
+            this.pool = pool;
+            this.key = key;
+        }
+
+        void remove(Entry entry) {
+            byUsage.remove(entry);
+            byIdle.remove(entry);
+            if (byUsage.isEmpty()) {
+                pool.buckets.remove(key);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Vehicle vehicle;
+        private final String plate;
+        private final long rentedDays;
+        private final int rentals;
+        private final long lastReturned;
+        private List<Bucket> buckets = new ArrayList<>(3);
+
+        Entry(Vehicle vehicle, VehicleUsage.Counters counters) {
+            this.vehicle = vehicle;
+            this.plate = vehicle.getLicensePlate();
+            this.rentedDays = counters.getRentedDays();
+            this.rentals = counters.getRentals();
+            this.lastReturned = counters.lastReturnedDay();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.nio.ByteBuffer;
+
+// Reads and writes one vehicle type: the text line of vehicles.txt, the binary form used by the
+// binary log and the mapped table, and the details shown in listings. The common fields are
+// handled here, a subclass only deals with the fields of its own type. See VehicleCodecs.
+public abstract class VehicleCodec<V extends Vehicle> {
+    private final String typeName;
+    private final byte typeId;
+    private final Class<V> vehicleType;
+    private final int extraFields;
+    private final int extraBytes;
+
+    // typeName is the first field of a text line, typeId the type byte of the binary formats.
+    // extraFields / extraBytes: how many text fields and bytes the type-specific part takes.
+    protected VehicleCodec(String typeName, int typeId, Class<V> vehicleType, int extraFields, int extraBytes) {
+        this.typeName = typeName;
+        this.typeId = (byte) typeId;
+        this.vehicleType = vehicleType;
+        this.extraFields = extraFields;
+        this.extraBytes = extraBytes;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public byte getTypeId() {
+        return typeId;
+    }
+
+    public Class<V> getVehicleType() {
+        return vehicleType;
+    }
+
+    public int getExtraBytes() {
+        return extraBytes;
+    }
+
+    // fields holds the extraFields values starting at offset
+    protected abstract V create(String make, String model, int year, String[] fields, int offset);
+
+    // Appends ",value" for each type-specific field
+    protected abstract void appendFields(V vehicle, StringBuilder out);
+
+    protected abstract V read(String make, String model, int year, ByteBuffer in);
+
+    protected abstract void write(V vehicle, ByteBuffer out);
+
+    protected abstract void appendDetails(V vehicle, StringBuilder out);
+
+    // Type,Plate,Make,Model,Year,Status,fields...
+    public final void encode(Vehicle vehicle, StringBuilder out) {
+        V v = vehicleType.cast(vehicle);
+        out.append(typeName).append(',')
+            .append(v.getLicensePlate()).append(',')
+            .append(v.getMake()).append(',')
+            .append(v.getModel()).append(',')
+            .append(v.getYear()).append(',')
+            .append(v.getStatus().name());
+        appendFields(v, out);
+    }
+
+    // Parses a split text line. Status may be left out (imports), the vehicle is then AVAILABLE.
+    public final Vehicle decode(String[] parts) {
+        boolean hasStatus = parts.length == 6 + extraFields;
+        if (!hasStatus && parts.length != 5 + extraFields) {
+            throw new IllegalArgumentException("Expected " + (5 + extraFields) + " or " + (6 + extraFields)
+                + " fields for " + typeName + " but found " + parts.length);
+        }
+        String plate = parts[1].trim();
+        String make = parts[2].trim();
+        String model = parts[3].trim();
+        if (make.isEmpty() || model.isEmpty()) {
+            throw new IllegalArgumentException("Make and model are required.");
+        }
+        int year;
+        try {
+            year = Integer.parseInt(parts[4].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid year: " + parts[4].trim());
+        }
+        Vehicle vehicle = create(make, model, year, parts, hasStatus ? 6 : 5);
+        vehicle.setLicensePlate(plate);
+        if (hasStatus) {
+            vehicle.setStatus(Vehicle.VehicleStatus.valueOf(parts[5].trim()));
+        }
+        return vehicle;
+    }
+
+    public final void writeFields(Vehicle vehicle, ByteBuffer out) {
+        write(vehicleType.cast(vehicle), out);
+    }
+
+    public final Vehicle readFields(String make, String model, int year, ByteBuffer in) {
+        return read(make, model, year, in);
+    }
+
+    public final void details(Vehicle vehicle, StringBuilder out) {
+        appendDetails(vehicleType.cast(vehicle), out);
+    }
+
+    protected static int parseInt(String field, String name) {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + field.trim());
+        }
+    }
+
+    protected static boolean parseBoolean(String field, String name) {
+        String value = field.trim();
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+}
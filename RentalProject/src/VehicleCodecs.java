@@ -0,0 +1,239 @@
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Registry of vehicle codecs, looked up by class, by text type name and by binary type id.
+// Car, Motorcycle, Truck and SportCar are built in; another Vehicle subclass becomes storable
+// everywhere (text, binary log, mapped table, JDBC, replication) by registering its codec.
+public final class VehicleCodecs {
+    // Room for the type-specific part in the mapped table's fixed-size slots
+    public static final int MAX_EXTRA_BYTES = 32;
+
+    private static final Map<Class<?>, VehicleCodec<?>> byClass = new ConcurrentHashMap<>();
+    private static final Map<String, VehicleCodec<?>> byName = new ConcurrentHashMap<>();
+    private static final Map<Byte, VehicleCodec<?>> byId = new ConcurrentHashMap<>();
+
+    static {
+        register(new CarCodec());
+        register(new MotorcycleCodec());
+        register(new TruckCodec());
+        register(new SportCarCodec());
+    }
+
+    private VehicleCodecs() {
+    }
+
+    public static synchronized void register(VehicleCodec<?> codec) {
+        if (codec.getExtraBytes() > MAX_EXTRA_BYTES) {
+            throw new IllegalArgumentException(codec.getTypeName() + " needs more than " + MAX_EXTRA_BYTES + " bytes.");
+        }
+        VehicleCodec<?> sameId = byId.get(codec.getTypeId());
+        if (sameId != null && sameId.getVehicleType() != codec.getVehicleType()) {
+            throw new IllegalArgumentException("Type id " + codec.getTypeId() + " is taken by " + sameId.getTypeName());
+        }
+        VehicleCodec<?> sameName = byName.get(codec.getTypeName());
+        if (sameName != null && sameName.getVehicleType() != codec.getVehicleType()) {
+            throw new IllegalArgumentException("Type name " + codec.getTypeName() + " is taken by " + sameName.getVehicleType().getName());
+        }
+        // A class registered again keeps only its new name and id
+        VehicleCodec<?> previous = byClass.put(codec.getVehicleType(), codec);
+        if (previous != null) {
+            byName.remove(previous.getTypeName(), previous);
+            byId.remove(previous.getTypeId(), previous);
+        }
+        byName.put(codec.getTypeName(), codec);
+        byId.put(codec.getTypeId(), codec);
+    }
+
+    // Exact class only: a subclass without its own codec would lose its fields, so it is refused
+    public static VehicleCodec<?> forVehicle(Vehicle vehicle) {
+        VehicleCodec<?> codec = byClass.get(vehicle.getClass());
+        if (codec == null) {
+            throw new IllegalArgumentException("No codec registered for " + vehicle.getClass().getName());
+        }
+        return codec;
+    }
+
+    public static VehicleCodec<?> forName(String typeName) {
+        VehicleCodec<?> codec = byName.get(typeName);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown vehicle type: " + typeName);
+        }
+        return codec;
+    }
+
+    // Null for an unknown id, binary readers report that as corruption
+    public static VehicleCodec<?> forId(byte typeId) {
+        return byId.get(typeId);
+    }
+
+    public static Vehicle decode(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 5) {
+            throw new IllegalArgumentException("Expected at least 5 fields but found " + parts.length);
+        }
+        return forName(parts[0].trim()).decode(parts);
+    }
+
+    public static void encode(Vehicle vehicle, StringBuilder out) {
+        forVehicle(vehicle).encode(vehicle, out);
+    }
+
+    public static String encode(Vehicle vehicle) {
+        StringBuilder out = new StringBuilder(64);
+        encode(vehicle, out);
+        return out.toString();
+    }
+
+    public static boolean isRegistered(Vehicle vehicle) {
+        return byClass.containsKey(vehicle.getClass());
+    }
+
+    // Appends the type-specific details for listings, nothing for an unregistered type
+    public static void details(Vehicle vehicle, StringBuilder out) {
+        VehicleCodec<?> codec = byClass.get(vehicle.getClass());
+        if (codec != null) {
+            codec.details(vehicle, out);
+        }
+    }
+
+    public static String typeName(Vehicle vehicle) {
+        VehicleCodec<?> codec = byClass.get(vehicle.getClass());
+        return codec == null ? "Unknown" : codec.getTypeName();
+    }
+
+    private static final class CarCodec extends VehicleCodec<Car> {
+        CarCodec() {
+            super("Car", 1, Car.class, 1, 4);
+        }
+
+        @Override
+        protected Car create(String make, String model, int year, String[] fields, int offset) {
+            return new Car(make, model, year, parseInt(fields[offset], "seat count"));
+        }
+
+        @Override
+        protected void appendFields(Car car, StringBuilder out) {
+            out.append(',').append(car.getNumSeats());
+        }
+
+        @Override
+        protected Car read(String make, String model, int year, ByteBuffer in) {
+            return new Car(make, model, year, in.getInt());
+        }
+
+        @Override
+        protected void write(Car car, ByteBuffer out) {
+            out.putInt(car.getNumSeats());
+        }
+
+        @Override
+        protected void appendDetails(Car car, StringBuilder out) {
+            out.append(car.getNumSeats()).append(" seats");
+        }
+    }
+
+    private static final class MotorcycleCodec extends VehicleCodec<Motorcycle> {
+        MotorcycleCodec() {
+            super("Motorcycle", 2, Motorcycle.class, 1, 1);
+        }
+
+        @Override
+        protected Motorcycle create(String make, String model, int year, String[] fields, int offset) {
+            return new Motorcycle(make, model, year, parseBoolean(fields[offset], "sidecar flag"));
+        }
+
+        @Override
+        protected void appendFields(Motorcycle motorcycle, StringBuilder out) {
+            out.append(',').append(motorcycle.hasSidecar());
+        }
+
+        @Override
+        protected Motorcycle read(String make, String model, int year, ByteBuffer in) {
+            return new Motorcycle(make, model, year, in.get() != 0);
+        }
+
+        @Override
+        protected void write(Motorcycle motorcycle, ByteBuffer out) {
+            out.put((byte) (motorcycle.hasSidecar() ? 1 : 0));
+        }
+
+        @Override
+        protected void appendDetails(Motorcycle motorcycle, StringBuilder out) {
+            out.append(motorcycle.hasSidecar() ? "sidecar" : "no sidecar");
+        }
+    }
+
+    private static final class TruckCodec extends VehicleCodec<Truck> {
+        TruckCodec() {
+            super("Truck", 3, Truck.class, 1, 8);
+        }
+
+        @Override
+        protected Truck create(String make, String model, int year, String[] fields, int offset) {
+            try {
+                return new Truck(make, model, year, Double.parseDouble(fields[offset].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cargo capacity: " + fields[offset].trim());
+            }
+        }
+
+        @Override
+        protected void appendFields(Truck truck, StringBuilder out) {
+            out.append(',').append(truck.getCargoCapacity());
+        }
+
+        @Override
+        protected Truck read(String make, String model, int year, ByteBuffer in) {
+            return new Truck(make, model, year, in.getDouble());
+        }
+
+        @Override
+        protected void write(Truck truck, ByteBuffer out) {
+            out.putDouble(truck.getCargoCapacity());
+        }
+
+        @Override
+        protected void appendDetails(Truck truck, StringBuilder out) {
+            out.append(truck.getCargoCapacity()).append(" cargo");
+        }
+    }
+
+    // SportCar,Plate,Make,Model,Year,Status,Seats,Horsepower,Turbo
+    private static final class SportCarCodec extends VehicleCodec<SportCar> {
+        SportCarCodec() {
+            super("SportCar", 4, SportCar.class, 3, 9);
+        }
+
+        @Override
+        protected SportCar create(String make, String model, int year, String[] fields, int offset) {
+            return new SportCar(make, model, year, parseInt(fields[offset], "seat count"),
+                parseInt(fields[offset + 1], "horsepower"), parseBoolean(fields[offset + 2], "turbo flag"));
+        }
+
+        @Override
+        protected void appendFields(SportCar car, StringBuilder out) {
+            out.append(',').append(car.getNumSeats())
+                .append(',').append(car.getHorsepower())
+                .append(',').append(car.hasTurbo());
+        }
+
+        @Override
+        protected SportCar read(String make, String model, int year, ByteBuffer in) {
+            return new SportCar(make, model, year, in.getInt(), in.getInt(), in.get() != 0);
+        }
+
+        @Override
+        protected void write(SportCar car, ByteBuffer out) {
+            out.putInt(car.getNumSeats());
+            out.putInt(car.getHorsepower());
+            out.put((byte) (car.hasTurbo() ? 1 : 0));
+        }
+
+        @Override
+        protected void appendDetails(SportCar car, StringBuilder out) {
+            out.append(car.getNumSeats()).append(" seats, ").append(car.getHorsepower()).append(" hp")
+                .append(car.hasTurbo() ? ", turbo" : "");
+        }
+    }
+}
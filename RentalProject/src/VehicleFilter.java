@@ -0,0 +1,61 @@
+// A search condition, evaluated against a VehicleIndex into the bitmap of matching vehicles.
+// Conditions combine with and(), or() and not(), e.g. available cars with 5+ seats from 2020 on:
+//   type("Car").and(status(AVAILABLE)).and(seatsAtLeast(5)).and(yearAtLeast(2020))
+@FunctionalInterface
+public interface VehicleFilter {
+
+    CompressedBitmap evaluate(VehicleIndex index);
+
+    default VehicleFilter and(VehicleFilter other) {
+        return index -> evaluate(index).and(other.evaluate(index));
+    }
+
+    default VehicleFilter or(VehicleFilter other) {
+        return index -> evaluate(index).or(other.evaluate(index));
+    }
+
+    default VehicleFilter not() {
+        return index -> index.all().andNot(evaluate(index));
+    }
+
+    static VehicleFilter any() {
+        return index -> index.all();
+    }
+
+    // Class name, case-insensitive: "Car" (includes sport cars), "SportCar", "Motorcycle", "Truck"
+    static VehicleFilter type(String type) {
+        return index -> index.type(type);
+    }
+
+    static VehicleFilter status(Vehicle.VehicleStatus status) {
+        return index -> index.status(status);
+    }
+
+    static VehicleFilter yearBetween(int min, int max) {
+        return index -> index.years(min, max);
+    }
+
+    static VehicleFilter yearAtLeast(int min) {
+        return yearBetween(min, Integer.MAX_VALUE);
+    }
+
+    static VehicleFilter seatsBetween(int min, int max) {
+        return index -> index.seats(min, max);
+    }
+
+    static VehicleFilter seatsAtLeast(int min) {
+        return seatsBetween(min, Integer.MAX_VALUE);
+    }
+
+    static VehicleFilter cargoBetween(double min, double max) {
+        return index -> index.cargo(min, max);
+    }
+
+    static VehicleFilter cargoAtLeast(double min) {
+        return cargoBetween(min, Double.MAX_VALUE);
+    }
+
+    static VehicleFilter sidecar(boolean sidecar) {
+        return index -> index.sidecar(sidecar);
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Bitmap indexes over the fleet for multi-criteria searches. Every vehicle gets a dense id in the
+// order it was added, and every attribute value maps to the bitmap of ids that have it. Year and
+// seats are bucketed by value, cargo capacity by whole unit; a range filter ORs its buckets and
+// checks the two edge cargo buckets vehicle by vehicle. RentalSystem keeps the index current as a
+// listener, so status changes made directly on a Vehicle are not seen here.
+public class VehicleIndex implements RentalListener {
+    private List<Vehicle> vehiclesById = new ArrayList<>();
+    private Map<Vehicle, Integer> ids = new IdentityHashMap<>();
+
+    private CompressedBitmap all = new CompressedBitmap();
+    private Map<String, CompressedBitmap> byType = new HashMap<>();
+    private Map<Vehicle.VehicleStatus, CompressedBitmap> byStatus = new EnumMap<>(Vehicle.VehicleStatus.class);
+    private NavigableMap<Integer, CompressedBitmap> byYear = new TreeMap<>();
+    private NavigableMap<Integer, CompressedBitmap> bySeats = new TreeMap<>();
+    private NavigableMap<Integer, CompressedBitmap> byCargo = new TreeMap<>();
+    private CompressedBitmap withSidecar = new CompressedBitmap();
+    private CompressedBitmap withoutSidecar = new CompressedBitmap();
+
+    public synchronized void add(Vehicle vehicle) {
+        if (ids.containsKey(vehicle)) {
+            return;
+        }
+        int id = vehiclesById.size();
+        vehiclesById.add(vehicle);
+        ids.put(vehicle, id);
+
+        all.add(id);
+        // A SportCar is found both as "SportCar" and as "Car"
+        for (Class<?> type = vehicle.getClass(); type != null && type != Vehicle.class; type = type.getSuperclass()) {
+            bitmap(byType, type.getSimpleName().toLowerCase()).add(id);
+        }
+        bitmap(byStatus, vehicle.getStatus()).add(id);
+        bitmap(byYear, vehicle.getYear()).add(id);
+        switch (vehicle.getAttribute()) {
+            case SEATS:
+                bitmap(bySeats, (int) vehicle.getAttributeValue()).add(id);
+                break;
+            case CARGO:
+                bitmap(byCargo, cargoBucket(vehicle.getAttributeValue())).add(id);
+                break;
+            case SIDECAR:
+                (vehicle.getAttributeValue() > 0 ? withSidecar : withoutSidecar).add(id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public synchronized void addAll(Collection<? extends Vehicle> vehicles) {
+        for (Vehicle vehicle : vehicles) {
+            add(vehicle);
+        }
+    }
+
+    public synchronized List<Vehicle> search(VehicleFilter filter) {
+        List<Vehicle> result = new ArrayList<>();
+        filter.evaluate(this).forEach(id -> result.add(vehiclesById.get(id)));
+        return result;
+    }
+
+    public synchronized int count(VehicleFilter filter) {
+        return filter.evaluate(this).cardinality();
+    }
+
+    public synchronized int size() {
+        return vehiclesById.size();
+    }
+
+    @Override
+    public void vehicleAdded(Vehicle vehicle) {
+        add(vehicle);
+    }
+
+    @Override
+    public synchronized void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+        Integer id = ids.get(vehicle);
+        if (id == null) {
+            return;
+        }
+        if (oldStatus != null) {
+            bitmap(byStatus, oldStatus).remove(id);
+        }
+        bitmap(byStatus, vehicle.getStatus()).add(id);
+    }
+
+    // Bitmap lookups for VehicleFilter, always called from search() or count() under the index lock.
+    // Single-bucket lookups hand out the live bitmap; filters only read it or combine it into new ones.
+
+    CompressedBitmap all() {
+        return all;
+    }
+
+    CompressedBitmap type(String type) {
+        return lookup(byType, type.toLowerCase());
+    }
+
+    CompressedBitmap status(Vehicle.VehicleStatus status) {
+        return lookup(byStatus, status);
+    }
+
+    CompressedBitmap years(int min, int max) {
+        return union(byYear, min, max);
+    }
+
+    CompressedBitmap seats(int min, int max) {
+        return union(bySeats, min, max);
+    }
+
+    CompressedBitmap sidecar(boolean sidecar) {
+        return sidecar ? withSidecar : withoutSidecar;
+    }
+
+    CompressedBitmap cargo(double min, double max) {
+        if (min > max) {
+            return new CompressedBitmap();
+        }
+        int low = cargoBucket(min);
+        int high = cargoBucket(max);
+        List<CompressedBitmap> parts = new ArrayList<>();
+        for (Map.Entry<Integer, CompressedBitmap> bucket : byCargo.subMap(low, true, high, true).entrySet()) {
+            if (bucket.getKey() != low && bucket.getKey() != high) {
+                parts.add(bucket.getValue());
+                continue;
+            }
+            // Edge bucket: only part of it may be in range
+            CompressedBitmap edge = new CompressedBitmap();
+            bucket.getValue().forEach(id -> {
+                double capacity = ((Truck) vehiclesById.get(id)).getCargoCapacity();
+                if (capacity >= min && capacity <= max) {
+                    edge.add(id);
+                }
+            });
+            parts.add(edge);
+        }
+        return CompressedBitmap.orAll(parts);
+    }
+
+    private static int cargoBucket(double capacity) {
+        return (int) Math.floor(Math.min(capacity, Integer.MAX_VALUE));
+    }
+
+    private static CompressedBitmap union(NavigableMap<Integer, CompressedBitmap> buckets, int min, int max) {
+        if (min > max) {
+            return new CompressedBitmap();
+        }
+        return CompressedBitmap.orAll(buckets.subMap(min, true, max, true).values());
+    }
+
+    private static <K> CompressedBitmap lookup(Map<K, CompressedBitmap> index, K key) {
+        CompressedBitmap bitmap = index.get(key);
+        return bitmap == null ? new CompressedBitmap() : bitmap;
+    }
+
+    private static <K> CompressedBitmap bitmap(Map<K, CompressedBitmap> index, K key) {
+        return index.computeIfAbsent(key, k -> new CompressedBitmap());
+    }
+}
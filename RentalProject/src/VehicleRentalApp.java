@@ -1,13 +1,69 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.time.LocalDate;
 
 public class VehicleRentalApp {
     public static void main(String[] args) {
+        // VehicleRentalApp --batch [commandFile]: replay commands (see BatchRunner) from the file, or from stdin
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args.length > 1 ? args[1] : null));
+        }
+
         Scanner scanner = new Scanner(System.in);
+        // The menu is usable right away, the rental history keeps loading in the background
+        RentalSystem.setHistoryLoading(RentalSystem.HistoryLoading.BACKGROUND);
         RentalSystem rentalSystem = RentalSystem.getInstance();
 
+        // Late returns are reported as they are detected
+        rentalSystem.addListener(new RentalListener() {
+            @Override
+            public void rentalOverdue(RentalRecord rent) {
+                System.out.println("Overdue: " + rent.getVehicle().getLicensePlate() + " rented by "
+                    + rent.getCustomer().getCustomerName() + " was due " + rentalSystem.getDueDate(rent));
+            }
+        });
+        rentalSystem.startOverdueChecks(1, TimeUnit.HOURS);
+
+        // Vehicles due for service are taken out of the fleet until option 8 brings them back
+        rentalSystem.addListener(new RentalListener() {
+            @Override
+            public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus oldStatus) {
+                if (oldStatus == Vehicle.VehicleStatus.AVAILABLE
+                        && (vehicle.getStatus() == Vehicle.VehicleStatus.MAINTENANCE
+                            || vehicle.getStatus() == Vehicle.VehicleStatus.OUTOFSERVICE)) {
+                    System.out.println("Service due: " + vehicle.getLicensePlate() + " is now " + vehicle.getStatus());
+                }
+            }
+        });
+        rentalSystem.startMaintenanceChecks(1, TimeUnit.HOURS, 100);
+
+        // Read replicas (see RentalReplica) can follow this system when a replication port is given.
+        // Only local replicas unless rental.replication.bind names the address to listen on.
+        String replicationPort = System.getProperty("rental.replication.port");
+        if (replicationPort != null) {
+            try {
+                String bind = System.getProperty("rental.replication.bind");
+                ReplicationServer server = bind == null
+                    ? ReplicationServer.start(rentalSystem, Integer.parseInt(replicationPort))
+                    : ReplicationServer.start(rentalSystem, InetAddress.getByName(bind), Integer.parseInt(replicationPort));
+                System.out.println("Replicas can connect on " + server.getAddress().getHostAddress() + ":" + server.getPort());
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Replication not started: " + e.getMessage());
+            }
+        }
+
         while (true) {
-        	System.out.println("\n1: Add Vehicle\n2: Add Customer\n3: Rent Vehicle\n4: Return Vehicle\n5: Display Available Vehicles\n6: Show Rental History\n7: Exit");
+        	System.out.println("\n1: Add Vehicle\n2: Add Customer\n3: Rent Vehicle\n4: Return Vehicle\n5: Display Available Vehicles\n6: Show Rental History\n7: Exit\n8: Complete Maintenance");
             int choice = scanner.nextInt();
             scanner.nextLine();
 
@@ -137,10 +193,37 @@ public class VehicleRentalApp {
                     rentalSystem.displayRentalHistory();
                     break;
                     
+                case 8:
+                    System.out.println("List of Vehicles:");
+                    rentalSystem.displayVehicles(false);
+
+                    System.out.print("Enter license plate: ");
+                    Vehicle serviced = rentalSystem.findVehicleByPlate(scanner.nextLine().toUpperCase());
+                    if (serviced == null) {
+                        System.out.println("Vehicle not found.");
+                        break;
+                    }
+                    rentalSystem.completeMaintenance(serviced);
+                    break;
+
                 case 7:
                 	scanner.close();
                     System.exit(0);
             }
         }
     }
-}
\ No newline at end of file
+
+    private static int runBatch(String commandFile) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try (BufferedReader in = commandFile != null
+                ? Files.newBufferedReader(Paths.get(commandFile), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)) {
+            BatchRunner.Summary summary = new BatchRunner(RentalSystem.getInstance(), out).run(in);
+            return summary.getFailed() == 0 ? 0 : 1;
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("Batch aborted: " + e.getMessage());
+            return 2;
+        }
+    }
+}
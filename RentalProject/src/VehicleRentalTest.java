@@ -1,7 +1,24 @@
 import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.lang.reflect.Field;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
@@ -14,7 +31,8 @@ class VehicleRentalTest {
 
 	@BeforeEach
 	void setUp() throws Exception {
-        rentalSystem = RentalSystem.getInstance();
+        // Each test gets its own in-memory system, so tests don't touch the data files or each other
+        rentalSystem = RentalSystem.builder().inMemory().build();
         
         // Initialize test vehicle and customer
         vehicle = new Car("Toyota", "Camry", 2020, 5);
@@ -25,6 +43,11 @@ class VehicleRentalTest {
         rentalSystem.addVehicle(vehicle);
         rentalSystem.addCustomer(customer);
 	}
+
+	@AfterEach
+	void tearDown() {
+        rentalSystem.close();
+	}
 	
 	@Test
 	void testLicensePlateValidation() {
@@ -136,4 +159,530 @@ class VehicleRentalTest {
         }
     }
 
+	@Test
+    void testIndependentInstances() throws Exception {
+        Path directory = Files.createTempDirectory("rental-instance");
+        try {
+            try (RentalSystem first = RentalSystem.builder().dataDirectory(directory.resolve("a").toString()).verbose(false).build();
+                 RentalSystem second = RentalSystem.builder().dataDirectory(directory.resolve("b").toString()).verbose(false).build()) {
+                assertTrue(first.addVehicle(vehicle));
+                assertNull(second.findVehicleByPlate("TTT001"), "Instances must not share data");
+            }
+            try (RentalSystem reopened = RentalSystem.builder().dataDirectory(directory.resolve("a").toString()).build()) {
+                assertNotNull(reopened.findVehicleByPlate("TTT001"), "Data directory instances persist");
+            }
+        }
+        finally {
+            DurableFiles.deleteRecursively(directory.toFile());
+        }
+    }
+
+	@Test
+    void testRentalIntervalPairing() {
+        RentalHistory history = new RentalHistory();
+        LocalDate start = LocalDate.of(2025, 1, 1);
+
+        history.addRecord(new RentalRecord(vehicle, customer, start, 100.0, "RENT"));
+        assertNotNull(history.getOpenRental("TTT001"), "RENT should be open until returned");
+
+        history.addRecord(new RentalRecord(vehicle, customer, start.plusDays(5), 20.0, "RETURN"));
+        assertNull(history.getOpenRental("TTT001"));
+        assertEquals(1, history.getRentalIntervals().size());
+        assertEquals(5, history.getRentalIntervals().get(0).getDays());
+        assertEquals(120.0, history.getRentalIntervals().get(0).getTotalAmount(), 0.001);
+
+        RentalAnalytics analytics = new RentalAnalytics(history);
+        assertEquals(0.5, analytics.utilization("TTT001", start, start.plusDays(10)), 0.001);
+        assertEquals(5.0, analytics.averageRentalDays(), 0.001);
+    }
+
+	@Test
+    void testFleetUtilizationOfPartOfTheFleet() {
+        RentalHistory history = new RentalHistory();
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        Truck truck = new Truck("Volvo", "FH", 2021, 3.5);
+        truck.setLicensePlate("TRK001");
+        Truck idleTruck = new Truck("MAN", "TGX", 2022, 4.0);
+        idleTruck.setLicensePlate("TRK002");
+
+        // The car is rented the whole window, the trucks for 2 of their 20 vehicle-days
+        history.addRecord(new RentalRecord(vehicle, customer, start, 100.0, "RENT"));
+        history.addRecord(new RentalRecord(truck, customer, start.plusDays(3), 100.0, "RENT"));
+        history.addRecord(new RentalRecord(truck, customer, start.plusDays(5), 0.0, "RETURN"));
+
+        RentalAnalytics analytics = new RentalAnalytics(history);
+        LocalDate to = start.plusDays(10);
+        assertEquals(0.1, analytics.fleetUtilization(Arrays.asList(truck, idleTruck), start, to), 0.001,
+            "Rentals of vehicles outside the subset don't count");
+        assertEquals(12.0 / 30, analytics.fleetUtilization(Arrays.asList(vehicle, truck, idleTruck), start, to), 0.001);
+        assertEquals(0.0, analytics.fleetUtilization(Arrays.asList(idleTruck), start, to), 0.0);
+    }
+
+	@Test
+    void testVehicleIndexSearch() {
+        VehicleIndex index = new VehicleIndex();
+        Truck truck = new Truck("Volvo", "FH", 2021, 3.5);
+        truck.setLicensePlate("TRK001");
+        Motorcycle bike = new Motorcycle("Honda", "CB", 2022, true);
+        bike.setLicensePlate("MOT001");
+        index.addAll(Arrays.asList(vehicle, truck, bike));
+
+        VehicleFilter bigCars = VehicleFilter.type("Car")
+            .and(VehicleFilter.status(Vehicle.VehicleStatus.AVAILABLE))
+            .and(VehicleFilter.seatsAtLeast(5))
+            .and(VehicleFilter.yearAtLeast(2020));
+        assertEquals(1, index.count(bigCars));
+        assertSame(truck, index.search(VehicleFilter.cargoAtLeast(3.0)).get(0));
+        assertEquals(0, index.count(VehicleFilter.cargoAtLeast(3.6)));
+        assertEquals(2, index.count(VehicleFilter.sidecar(true).or(VehicleFilter.type("Truck"))));
+
+        Vehicle.VehicleStatus before = vehicle.getStatus();
+        vehicle.setStatus(Vehicle.VehicleStatus.RENTED);
+        index.statusChanged(vehicle, before);
+        assertEquals(0, index.count(bigCars));
+        vehicle.setStatus(before);
+    }
+
+	@Test
+    void testOverdueDetection() {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        OverdueMonitor monitor = new OverdueMonitor(start, RentalSystem.DEFAULT_RENTAL_DAYS);
+
+        monitor.recordAdded(new RentalRecord(vehicle, customer, start, 100.0, "RENT", start.plusDays(3)));
+        assertTrue(monitor.advanceTo(start.plusDays(3)).isEmpty(), "Not overdue on the due date itself");
+        assertEquals(1, monitor.advanceTo(start.plusDays(200)).size());
+        assertTrue(monitor.isOverdue("TTT001"));
+
+        monitor.recordAdded(new RentalRecord(vehicle, customer, start.plusDays(201), 0.0, "RETURN"));
+        assertFalse(monitor.isOverdue("TTT001"));
+        assertEquals(0, monitor.scheduledCount());
+    }
+
+	@Test
+    void testSportCarCodecRoundTrip() {
+        SportCar sportCar = new SportCar("Porsche", "911", 2023, 2, 450, true);
+        sportCar.setLicensePlate("SPT001");
+
+        String line = VehicleCodecs.encode(sportCar);
+        assertEquals("SportCar,SPT001,Porsche,911,2023,AVAILABLE,2,450,true", line);
+
+        Vehicle decoded = VehicleCodecs.decode(line);
+        assertTrue(decoded instanceof SportCar, "SportCar must not come back as a plain Car");
+        assertEquals(450, ((SportCar) decoded).getHorsepower());
+        assertTrue(((SportCar) decoded).hasTurbo());
+        assertEquals(2, ((SportCar) decoded).getNumSeats());
+    }
+
+	@Test
+    void testCodecRegistrationClashes() {
+        Minibus minibus = new Minibus("Ford", "Transit", 2023, 12);
+        minibus.setLicensePlate("BUS002");
+        VehicleCodecs.register(new MinibusCodec("Minibus", 100));
+        assertSame(VehicleCodecs.forName("Minibus"), VehicleCodecs.forId((byte) 100));
+
+        // Registered again under a new name and id, the old ones are gone
+        VehicleCodecs.register(new MinibusCodec("Coach", 101));
+        assertNull(VehicleCodecs.forId((byte) 100));
+        assertThrows(IllegalArgumentException.class, () -> VehicleCodecs.forName("Minibus"));
+        assertEquals("Coach,BUS002,Ford,Transit,2023,AVAILABLE,12", VehicleCodecs.encode(minibus));
+        assertEquals(12, ((Minibus) VehicleCodecs.decode("Coach,BUS002,Ford,Transit,2023,AVAILABLE,12")).seats);
+
+        // Another class's name is refused like another class's id
+        assertThrows(IllegalArgumentException.class, () -> VehicleCodecs.register(new MinibusCodec("Car", 102)));
+        assertThrows(IllegalArgumentException.class, () -> VehicleCodecs.register(new MinibusCodec("Coach", 1)));
+        assertTrue(VehicleCodecs.decode("Car,CAR001,Toyota,Corolla,2020,AVAILABLE,5") instanceof Car);
+        assertSame(VehicleCodecs.forName("Coach"), VehicleCodecs.forId((byte) 101));
+        assertNull(VehicleCodecs.forId((byte) 102));
+    }
+
+	@Test
+    void testHistoryExportCsv() throws Exception {
+        RentalHistory history = new RentalHistory();
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        Customer quoted = new Customer("CCCT002", "Doe, \"JJ\"");
+        history.addRecord(new RentalRecord(vehicle, quoted, start, 100.0, "RENT", start.plusDays(3)));
+        history.addRecord(new RentalRecord(vehicle, quoted, start.plusDays(5), 20.5, "RETURN"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new HistoryExporter(history).export(out, HistoryExporter.Format.CSV, start, start, false);
+        assertEquals(1, count, "Only records inside the date range are exported");
+        assertEquals("type,plate,customer_id,customer_name,date,amount,due_date\n"
+            + "RENT,TTT001,CCCT002,\"Doe, \"\"JJ\"\"\",2025-01-01,100.00,2025-01-04\n", out.toString("UTF-8"));
+    }
+
+	@Test
+    void testOccupancyIndex() {
+        OccupancyIndex occupancy = new OccupancyIndex();
+        Truck truck = new Truck("Volvo", "FH", 2021, 3.5);
+        truck.setLicensePlate("TRK002");
+        LocalDate start = LocalDate.of(2025, 3, 1);
+
+        occupancy.recordAdded(new RentalRecord(vehicle, customer, start, 100.0, "RENT"));
+        occupancy.recordAdded(new RentalRecord(truck, customer, start.plusDays(2), 100.0, "RENT"));
+        occupancy.recordAdded(new RentalRecord(vehicle, customer, start.plusDays(4), 0.0, "RETURN"));
+
+        assertEquals(1, occupancy.rentedOn(start));
+        assertEquals(2, occupancy.rentedOn(start.plusDays(3)));
+        assertEquals(1, occupancy.rentedOn(start.plusDays(4)), "Returned vehicles are not out on the return day");
+        assertEquals(2, occupancy.peak(null, start.minusDays(30), start.plusDays(30)));
+        assertEquals(1, occupancy.peak("Truck", start, start.plusDays(3000)), "Open rentals stay out");
+        assertEquals(4, occupancy.vehicleDays("Car", start, start.plusDays(10)));
+        assertEquals(4 + 8, occupancy.vehicleDays(null, start, start.plusDays(10)));
+    }
+
+	@Test
+    void testBatchRunner() throws Exception {
+        String commands = "ADD_VEHICLE,Car,BAT001,Toyota,Camry,2020,5\n"
+            + "ADD_CUSTOMER,CB1,Batch Customer\n"
+            + "# rentals\n"
+            + "RENT,BAT001,CB1,80.0,2025-01-01\n"
+            + "RENT,BAT001,CB1,80.0,2025-01-02\n"
+            + "RETURN,BAT001,CB1,0,2025-01-05\n";
+        try (RentalSystem batchSystem = RentalSystem.builder().inMemory().build()) {
+            StringWriter output = new StringWriter();
+            BatchRunner.Summary summary = new BatchRunner(batchSystem, new PrintWriter(output))
+                .run(new BufferedReader(new StringReader(commands)));
+
+            assertEquals(5, summary.getCommands());
+            assertEquals(1, summary.getFailed(), "Renting a rented vehicle fails");
+            assertEquals(1, summary.getSucceeded(BatchRunner.Command.RENT));
+            assertTrue(output.toString().contains("Line 5: RENT failed"));
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, batchSystem.findVehicleByPlate("BAT001").getStatus());
+            assertEquals(2, batchSystem.getRentalHistory().size());
+        }
+    }
+
+	@Test
+    void testBatchRunnerCountsAddsThatAreNotStored() throws Exception {
+        String commands = "ADD_VEHICLE,Car,BAT002,Toyota,Camry,2020,5\n"
+            + "ADD_VEHICLE,Car,BAD,Toyota,Camry,2020,5\n"
+            + "ADD_CUSTOMER,CB2,Batch Customer\n";
+        try (RentalSystem batchSystem = RentalSystem.builder().inMemory().build()) {
+            batchSystem.setReadOnly(true);
+            StringWriter output = new StringWriter();
+            BatchRunner.Summary summary = new BatchRunner(batchSystem, new PrintWriter(output))
+                .run(new BufferedReader(new StringReader(commands)));
+
+            assertEquals(3, summary.getCommands());
+            assertEquals(3, summary.getFailed(), "Adds the system turns down are not counted as succeeded");
+            assertEquals(0, summary.getSucceeded(BatchRunner.Command.ADD_VEHICLE));
+            assertEquals(0, summary.getSucceeded(BatchRunner.Command.ADD_CUSTOMER));
+            assertTrue(output.toString().contains("Line 1: ADD_VEHICLE failed: vehicle BAT002 was not stored"));
+            assertTrue(output.toString().contains("Line 2: ADD_VEHICLE failed"));
+            assertTrue(output.toString().contains("Line 3: ADD_CUSTOMER failed: customer CB2 was not stored"));
+        }
+    }
+
+	@Test
+    void testBulkImport() throws Exception {
+        Path directory = Files.createTempDirectory("rental-import");
+        try {
+            Path vehicles = directory.resolve("vehicles.csv");
+            Files.write(vehicles, Arrays.asList(
+                "Type,Plate,Make,Model,Year,Extra",
+                "Car,IMP001,Toyota,Corolla,2020,5",
+                "Truck,IMP002,Volvo,FH,2021,3.5",
+                "",
+                "Car,IMP001,Toyota,Yaris,2021,4",
+                "Car,TTT001,Toyota,Camry,2020,5",
+                "Car,BAD,Toyota,Camry,2020,5"), StandardCharsets.UTF_8);
+            BulkImporter.ImportReport report = new BulkImporter(rentalSystem).importVehicles(vehicles.toString());
+            assertEquals(2, report.getAccepted());
+            assertEquals(2, report.getDuplicates(), "Repeated in the file and already in the fleet");
+            assertEquals(1, report.getRejected());
+            assertTrue(report.getBadRows().get(0).startsWith("Line 5: duplicate"), report.getBadRows().get(0));
+            assertTrue(report.getBadRows().get(2).startsWith("Line 7: "), report.getBadRows().get(2));
+            assertEquals("Corolla", rentalSystem.findVehicleByPlate("IMP001").getModel());
+
+            // Enough rows for several parsing chunks, with a duplicate of the first row at the end
+            List<String> lines = new ArrayList<>();
+            lines.add("ID,Name");
+            lines.add("C0,Doe, John");
+            for (int i = 1; i < 10000; i++) {
+                lines.add("C" + i + ",Customer " + i);
+            }
+            lines.add("CCCT001,Already There");
+            lines.add("C10000");
+            lines.add("C0,Doe, John");
+            Path customers = directory.resolve("customers.csv");
+            Files.write(customers, lines, StandardCharsets.UTF_8);
+            report = new BulkImporter(rentalSystem).importCustomers(customers.toString());
+            assertEquals(10000, report.getAccepted());
+            assertEquals(2, report.getDuplicates());
+            assertEquals(1, report.getRejected());
+            assertTrue(report.getBadRows().get(2).startsWith("Line 10004: duplicate"), report.getBadRows().get(2));
+            assertEquals("Doe, John", rentalSystem.findCustomerById("C0").getCustomerName());
+        }
+        finally {
+            DurableFiles.deleteRecursively(directory.toFile());
+        }
+    }
+
+	@Test
+    void testEventReplayAndLive() throws Exception {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        rentalSystem.rentVehicle(vehicle, customer, start, 100.0);
+        rentalSystem.returnVehicle(vehicle, customer, start.plusDays(2), 0.0);
+
+        BlockingQueue<RentalEvent> received = new LinkedBlockingQueue<>();
+        rentalSystem.getEvents().subscribe(new Flow.Subscriber<RentalEvent>() {
+            public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+            public void onNext(RentalEvent event) { received.add(event); }
+            public void onError(Throwable throwable) { }
+            public void onComplete() { }
+        }, 1);
+        rentalSystem.rentVehicle(vehicle, customer, start.plusDays(3), 100.0);
+
+        RentalEvent replayed = received.poll(5, TimeUnit.SECONDS);
+        RentalEvent live = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(RentalEvent.Type.RETURNED, replayed.getType(), "Replay starts at the requested record");
+        assertEquals(1, replayed.getRecordOffset());
+        assertEquals(RentalEvent.Type.RENTED, live.getType());
+        assertEquals(2, live.getRecordOffset());
+        assertSame(rentalSystem.getRentalHistory().getRentalHistory().get(2), live.getRecord());
+    }
+
+	@Test
+    void testAllocatorPicksLeastUsed() {
+        Car smallCar = new Car("Honda", "Fit", 2021, 4);
+        smallCar.setLicensePlate("TTT002");
+        Car otherCar = new Car("Kia", "Rio", 2022, 5);
+        otherCar.setLicensePlate("TTT003");
+        rentalSystem.addVehicle(smallCar);
+        rentalSystem.addVehicle(otherCar);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        rentalSystem.rentVehicle(vehicle, customer, start, 100.0);
+        rentalSystem.returnVehicle(vehicle, customer, start.plusDays(3), 0.0);
+
+        VehicleAllocator.Request fiveSeats = VehicleAllocator.Request.of("Car").seatsAtLeast(5);
+        assertSame(otherCar, rentalSystem.rentBestVehicle(fiveSeats, customer, start.plusDays(4), 100.0),
+            "The unused 5-seater goes before the one rented for 3 days");
+        assertSame(vehicle, rentalSystem.rentBestVehicle(fiveSeats, customer, start.plusDays(4), 100.0));
+        assertNull(rentalSystem.rentBestVehicle(fiveSeats, customer, start.plusDays(4), 100.0), "No 5-seater is left");
+        assertEquals(3, rentalSystem.getUsage().get("TTT001").getRentedDays());
+        assertThrows(IllegalArgumentException.class,
+            () -> rentalSystem.getAllocator().best(VehicleAllocator.Request.of("Car").cargoAtLeast(1.0)));
+    }
+
+	@Test
+    void testNewTypeIsAllocatedAndIndexedByItsAttribute() {
+        Minibus minibus = new Minibus("Ford", "Transit", 2023, 12);
+        minibus.setLicensePlate("BUS001");
+
+        VehicleAllocator allocator = new VehicleAllocator(new VehicleUsage());
+        allocator.add(minibus);
+        assertSame(minibus, allocator.best(VehicleAllocator.Request.of("Minibus").seatsAtLeast(10)));
+        assertNull(allocator.best(VehicleAllocator.Request.of("Minibus").seatsAtLeast(14)));
+
+        VehicleIndex index = new VehicleIndex();
+        index.add(minibus);
+        assertEquals(Arrays.asList(minibus), index.search(VehicleFilter.seatsAtLeast(12)));
+    }
+
+    // A vehicle type that neither the allocator nor the index knows by name
+    private static class Minibus extends Vehicle {
+        private final int seats;
+
+        Minibus(String make, String model, int year, int seats) {
+            super(make, model, year);
+            this.seats = seats;
+        }
+
+        @Override
+        public Attribute getAttribute() {
+            return Attribute.SEATS;
+        }
+
+        @Override
+        public double getAttributeValue() {
+            return seats;
+        }
+    }
+
+    private static class MinibusCodec extends VehicleCodec<Minibus> {
+        MinibusCodec(String typeName, int typeId) {
+            super(typeName, typeId, Minibus.class, 1, 4);
+        }
+
+        @Override
+        protected Minibus create(String make, String model, int year, String[] fields, int offset) {
+            return new Minibus(make, model, year, parseInt(fields[offset], "seat count"));
+        }
+
+        @Override
+        protected void appendFields(Minibus vehicle, StringBuilder out) {
+            out.append(',').append(vehicle.seats);
+        }
+
+        @Override
+        protected Minibus read(String make, String model, int year, ByteBuffer in) {
+            return new Minibus(make, model, year, in.getInt());
+        }
+
+        @Override
+        protected void write(Minibus vehicle, ByteBuffer out) {
+            out.putInt(vehicle.seats);
+        }
+
+        @Override
+        protected void appendDetails(Minibus vehicle, StringBuilder out) {
+            out.append(vehicle.seats).append(" seats");
+        }
+    }
+
+	@Test
+    void testMaintenanceAfterServiceInterval() throws Exception {
+        try (RentalSystem serviced = RentalSystem.builder().inMemory().verbose(false).serviceIntervals(2, 30).build()) {
+            serviced.addVehicle(vehicle);
+            serviced.addCustomer(customer);
+            LocalDate start = LocalDate.of(2025, 1, 1);
+            serviced.rentVehicle(vehicle, customer, start, 100.0);
+            serviced.returnVehicle(vehicle, customer, start.plusDays(1), 0.0);
+            assertEquals(0, serviced.runMaintenance(10), "One rental out of two is not due yet");
+
+            serviced.rentVehicle(vehicle, customer, start.plusDays(2), 100.0);
+            serviced.returnVehicle(vehicle, customer, start.plusDays(3), 0.0);
+            assertEquals(1, serviced.runMaintenance(10));
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, vehicle.getStatus());
+            assertFalse(serviced.rentVehicle(vehicle, customer, start.plusDays(4), 100.0), "Vehicles in maintenance cannot be rented");
+            assertEquals(1, serviced.countVehicles(VehicleFilter.status(Vehicle.VehicleStatus.MAINTENANCE)));
+
+            assertTrue(serviced.completeMaintenance(vehicle));
+            assertEquals(0.0, serviced.getMaintenance().getUrgency(vehicle), 0.0);
+            assertTrue(serviced.rentVehicle(vehicle, customer, start.plusDays(5), 100.0));
+        }
+    }
+
+	@Test
+    void testMaintenanceCountsUsageBeforeFirstCheck() throws Exception {
+        try (RentalSystem serviced = RentalSystem.builder().inMemory().verbose(false).serviceIntervals(2, 1000).build()) {
+            serviced.addVehicle(vehicle);
+            serviced.addCustomer(customer);
+            LocalDate start = LocalDate.of(2025, 1, 1);
+            for (int i = 0; i < 3; i++) {
+                serviced.rentVehicle(vehicle, customer, start.plusDays(2 * i), 100.0);
+                serviced.returnVehicle(vehicle, customer, start.plusDays(2 * i + 1), 0.0);
+            }
+            // The scheduler is only built now; three rentals since no service are still due
+            assertEquals(1.5, serviced.getMaintenance().getUrgency(vehicle), 0.001);
+            assertEquals(1, serviced.runMaintenance(10));
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, vehicle.getStatus());
+        }
+    }
+
+	@Test
+    void testServicePointSurvivesRestart() throws Exception {
+        Path directory = Files.createTempDirectory("rental-service");
+        try {
+            LocalDate start = LocalDate.of(2025, 1, 1);
+            try (RentalSystem serviced = open(directory)) {
+                serviced.addVehicle(vehicle);
+                serviced.addCustomer(customer);
+                for (int i = 0; i < 3; i++) {
+                    serviced.rentVehicle(vehicle, customer, start.plusDays(2 * i), 100.0);
+                    serviced.returnVehicle(vehicle, customer, start.plusDays(2 * i + 1), 0.0);
+                }
+                assertEquals(1, serviced.runMaintenance(10));
+                assertTrue(serviced.completeMaintenance(vehicle));
+                serviced.rentVehicle(vehicle, customer, start.plusDays(10), 100.0);
+                serviced.returnVehicle(vehicle, customer, start.plusDays(11), 0.0);
+            }
+            try (RentalSystem reopened = open(directory)) {
+                Vehicle stored = reopened.findVehicleByPlate("TTT001");
+                assertEquals(0.5, reopened.getMaintenance().getUrgency(stored), 0.001, "One rental since the service");
+                assertEquals(0, reopened.runMaintenance(10));
+            }
+        }
+        finally {
+            DurableFiles.deleteRecursively(directory.toFile());
+        }
+    }
+
+	@Test
+    void testPagedHistoryFilterAndSort() throws Exception {
+        List<RentalRecord> records = fillPagedHistory();
+        PagedHistoryModel model = new PagedHistoryModel(rentalSystem);
+        try {
+            PagedHistoryModel.Query query = new PagedHistoryModel.Query()
+                .withFilter(LocalDate.of(2025, 1, 2), null, null, null, "rent")
+                .withSort(PagedHistoryModel.SortKey.AMOUNT, false);
+            assertEquals(2, model.refresh(query).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(2, model.getPageCount(1));
+            assertEquals(Arrays.asList(records.get(4)), model.getPage(0, 1), "Highest amount first");
+            assertEquals(Arrays.asList(records.get(2)), model.getPage(1, 1));
+            assertTrue(model.getPage(2, 1).isEmpty());
+
+            query = query.withFilter(null, null, "pgd", null, null).withSort(PagedHistoryModel.SortKey.DATE, true);
+            assertEquals(2, model.refresh(query).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(Arrays.asList(records.get(2), records.get(3)), model.getPage(0, 10));
+        }
+        finally {
+            model.close();
+        }
+    }
+
+	@Test
+    void testPagedHistoryNewestFirst() throws Exception {
+        List<RentalRecord> records = fillPagedHistory();
+        PagedHistoryModel model = new PagedHistoryModel(rentalSystem);
+        try {
+            PagedHistoryModel.Query newestFirst = new PagedHistoryModel.Query().withSort(PagedHistoryModel.SortKey.NONE, false);
+            assertEquals(5, model.refresh(newestFirst).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(3, model.getPageCount(2));
+            assertEquals(Arrays.asList(records.get(4), records.get(3)), model.getPage(0, 2));
+            assertEquals(Arrays.asList(records.get(2), records.get(1)), model.getPage(1, 2));
+            assertEquals(Arrays.asList(records.get(0)), model.getPage(2, 2), "The last page is the start of the history");
+            assertTrue(model.getPage(3, 2).isEmpty());
+
+            assertEquals(5, model.refresh(new PagedHistoryModel.Query()).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(Arrays.asList(records.get(2), records.get(3)), model.getPage(1, 2));
+        }
+        finally {
+            model.close();
+        }
+    }
+
+	@Test
+    void testPagedHistorySupersededRefresh() throws Exception {
+        fillPagedHistory();
+        PagedHistoryModel model = new PagedHistoryModel(rentalSystem);
+        try {
+            PagedHistoryModel.Query filtered = new PagedHistoryModel.Query().withFilter(null, null, "ttt", null, null);
+            CompletableFuture<Integer> stale;
+            CompletableFuture<Integer> latest;
+            // Holding the history lock keeps the first scan from finishing before the second refresh
+            RentalHistory history = rentalSystem.getRentalHistory();
+            synchronized (history) {
+                stale = model.refresh(filtered);
+                latest = model.refresh(new PagedHistoryModel.Query());
+            }
+            assertEquals(-1, stale.get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(5, latest.get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(5, model.getRowCount(), "The superseded view was never published");
+        }
+        finally {
+            model.close();
+        }
+    }
+
+    // Five records straight into the history: TTT001 and PGD002, amounts 100, 20, 50, 5, 80
+    private List<RentalRecord> fillPagedHistory() {
+        Vehicle other = new Car("Honda", "Civic", 2021, 5);
+        other.setLicensePlate("PGD002");
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        List<RentalRecord> records = Arrays.asList(
+            new RentalRecord(vehicle, customer, start, 100.0, "RENT"),
+            new RentalRecord(vehicle, customer, start.plusDays(2), 20.0, "RETURN"),
+            new RentalRecord(other, customer, start.plusDays(1), 50.0, "RENT"),
+            new RentalRecord(other, customer, start.plusDays(5), 5.0, "RETURN"),
+            new RentalRecord(vehicle, customer, start.plusDays(6), 80.0, "RENT"));
+        for (RentalRecord record : records) {
+            rentalSystem.getRentalHistory().addRecord(record);
+        }
+        return records;
+    }
+
+    private static RentalSystem open(Path directory) throws Exception {
+        return RentalSystem.builder().dataDirectory(directory.toString()).verbose(false).serviceIntervals(2, 1000).build();
+    }
 }
@@ -0,0 +1,83 @@
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+// Cumulative usage per vehicle, kept current from the rent and return records: how often it was
+// rented, for how many days in total and when it last came back. The allocator and the maintenance
+// scheduler read it on every return, so it is counted incrementally instead of from the history.
+// A rental counts its days when it is returned, a same-day rental counts 0 days.
+public class VehicleUsage implements RentalListener {
+    private static final long NONE = Long.MIN_VALUE;
+
+    private Map<String, Counters> byPlate = new HashMap<>();
+
+    @Override
+    public synchronized void recordAdded(RentalRecord record) {
+        String plate = record.getVehicle().getLicensePlate();
+        long day = record.getDate().toEpochDay();
+        if ("RENT".equals(record.getTransactionType())) {
+            Counters counters = byPlate.computeIfAbsent(plate, p -> new Counters());
+            if (counters.rentedSince == NONE) {
+                counters.rentals++;
+                counters.rentedSince = day;
+            }
+        }
+        else if ("RETURN".equals(record.getTransactionType())) {
+            Counters counters = byPlate.get(plate);
+            if (counters != null && counters.rentedSince != NONE) {
+                counters.rentedDays += Math.max(0, day - counters.rentedSince);
+                counters.lastReturned = Math.max(day, counters.rentedSince);
+                counters.rentedSince = NONE;
+            }
+        }
+    }
+
+    // A copy, so callers can keep it as a sort key while the counters move on
+    public synchronized Counters get(String plate) {
+        Counters counters = byPlate.get(plate);
+        return counters == null ? new Counters() : counters.copy();
+    }
+
+    public static class Counters {
+        private int rentals = 0;
+        private long rentedDays = 0;
+        private long lastReturned = NONE;
+        private long rentedSince = NONE;
+
+        private Counters copy() {
+            Counters copy = new Counters();
+            copy.rentals = rentals;
+            copy.rentedDays = rentedDays;
+            copy.lastReturned = lastReturned;
+            copy.rentedSince = rentedSince;
+            return copy;
+        }
+
+        public int getRentals() {
+            return rentals;
+        }
+
+        // Days of the rentals that have been returned
+        public long getRentedDays() {
+            return rentedDays;
+        }
+
+        // Null if the vehicle never came back from a rental
+        public LocalDate getLastReturned() {
+            return lastReturned == NONE ? null : LocalDate.ofEpochDay(lastReturned);
+        }
+
+        long lastReturnedDay() {
+            return lastReturned;
+        }
+
+        public boolean isRented() {
+            return rentedSince != NONE;
+        }
+
+        @Override
+        public String toString() {
+            return rentals + " rentals, " + rentedDays + " days";
+        }
+    }
+}
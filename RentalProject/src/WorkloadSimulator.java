@@ -0,0 +1,323 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Synthetic load test: builds a fleet and customer base of the requested size in a scratch
+// data directory, drives mixed rent/return/search/add traffic from N concurrent clients for a
+// fixed time, then reports throughput, latency percentiles, errors and a consistency check.
+//
+// Usage: WorkloadSimulator [--vehicles N] [--customers N] [--clients N] [--seconds N]
+//                          [--mix rent,return,search,add] [--storage text|binary|mapped]
+//                          [--durability NONE|ON_RENAME|EVERY_OP|GROUP] [--virtual] [--keep]
+public class WorkloadSimulator {
+
+    public enum Operation { RENT, RETURN, SEARCH, ADD }
+
+    private int vehicleCount = 1000;
+    private int customerCount = 500;
+    private int clients = 8;
+    private int seconds = 10;
+    private int[] mix = { 40, 40, 15, 5 };
+    private String storageKind = "text";
+    private DurableFiles.Durability durability = DurableFiles.Durability.NONE;
+    private boolean virtualThreads = false;
+    private boolean keepData = false;
+
+    private RentalSystem rentalSystem;
+    private List<Vehicle> fleet;
+    private List<Customer> customerBase;
+    private AtomicInteger nextPlate;
+
+    public static void main(String[] args) throws Exception {
+        WorkloadSimulator simulator = new WorkloadSimulator();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles": simulator.vehicleCount = Integer.parseInt(args[++i]); break;
+                case "--customers": simulator.customerCount = Integer.parseInt(args[++i]); break;
+                case "--clients": simulator.clients = Integer.parseInt(args[++i]); break;
+                case "--seconds": simulator.seconds = Integer.parseInt(args[++i]); break;
+                case "--mix": simulator.mix = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--storage": simulator.storageKind = args[++i]; break;
+                case "--durability": simulator.durability = DurableFiles.Durability.valueOf(args[++i]); break;
+                case "--virtual": simulator.virtualThreads = true; break;
+                case "--keep": simulator.keepData = true; break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        if (simulator.mix.length != Operation.values().length) {
+            System.out.println("--mix needs " + Operation.values().length + " weights: rent,return,search,add");
+            return;
+        }
+        System.out.println(simulator.run());
+    }
+
+    // Plate number i as three letters and three digits, valid for Vehicle.isValidPlate
+    static String plate(int i) {
+        int letters = i / 1000;
+        return "" + (char) ('A' + letters / 676 % 26) + (char) ('A' + letters / 26 % 26) + (char) ('A' + letters % 26)
+            + String.format("%03d", i % 1000);
+    }
+
+    public Report run() throws Exception {
+        File dataDir = Files.createTempDirectory("rental-workload").toFile();
+        try {
+            rentalSystem = RentalSystem.builder()
+                .storage(storageKind, dataDir.getPath())
+                .durability(durability)
+                .verbose(false)
+                .build();
+            seed();
+            return drive();
+        }
+        finally {
+            if (rentalSystem != null) {
+                rentalSystem.close();
+            }
+            if (!keepData) {
+                DurableFiles.deleteRecursively(dataDir);
+            }
+        }
+    }
+
+    private void seed() {
+        Random random = new Random(42);
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < vehicleCount; i++) {
+            vehicles.add(newVehicle(i, random));
+        }
+        rentalSystem.addVehicles(vehicles);
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < customerCount; i++) {
+            customers.add(new Customer("C" + i, "Customer " + i));
+        }
+        rentalSystem.addCustomers(customers);
+        // The system's own list, so vehicles added during the run are rented and returned as well;
+        // it is copy-on-write and only grows here, so a random index below its size stays valid
+        fleet = rentalSystem.getVehicles();
+        customerBase = new ArrayList<>(rentalSystem.getCustomers());
+        nextPlate = new AtomicInteger(vehicleCount);
+    }
+
+    private static Vehicle newVehicle(int i, Random random) {
+        Vehicle vehicle;
+        switch (i % 3) {
+            case 0: vehicle = new Car("Toyota", "Corolla", 2010 + random.nextInt(15), 2 + random.nextInt(6)); break;
+            case 1: vehicle = new Motorcycle("Honda", "Shadow", 2010 + random.nextInt(15), random.nextBoolean()); break;
+            default: vehicle = new Truck("Volvo", "Fh", 2010 + random.nextInt(15), 1 + random.nextInt(20)); break;
+        }
+        vehicle.setLicensePlate(plate(i));
+        return vehicle;
+    }
+
+    private Report drive() throws Exception {
+        ExecutorService executor = newExecutor();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<ClientStats>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            results.add(executor.submit(() -> runClient(deadline)));
+        }
+        Report report = new Report(clients, seconds, virtualThreads);
+        for (Future<ClientStats> result : results) {
+            report.add(result.get());
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        report.setConsistency(checkConsistency());
+        return report;
+    }
+
+    // Virtual threads need Java 21; the project targets Java 8, so they are looked up reflectively
+    private ExecutorService newExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available on this JVM, using platform threads.");
+                virtualThreads = false;
+            }
+        }
+        return Executors.newFixedThreadPool(clients);
+    }
+
+    private ClientStats runClient(long deadline) {
+        ClientStats stats = new ClientStats();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int totalWeight = Arrays.stream(mix).sum();
+        while (System.nanoTime() < deadline) {
+            Operation operation = pick(random.nextInt(totalWeight));
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = execute(operation, random);
+            }
+            catch (RuntimeException e) {
+                stats.errors++;
+                continue;
+            }
+            stats.record(operation, System.nanoTime() - start, ok);
+        }
+        return stats;
+    }
+
+    private Operation pick(int roll) {
+        for (int i = 0; i < mix.length; i++) {
+            if (roll < mix[i]) {
+                return Operation.values()[i];
+            }
+            roll -= mix[i];
+        }
+        return Operation.SEARCH;
+    }
+
+    private boolean execute(Operation operation, ThreadLocalRandom random) {
+        Vehicle vehicle = fleet.get(random.nextInt(fleet.size()));
+        Customer customer = customerBase.get(random.nextInt(customerBase.size()));
+        switch (operation) {
+            case RENT:
+                return rentalSystem.rentVehicle(vehicle, customer, LocalDate.now(), 50 + random.nextInt(200));
+            case RETURN:
+                return rentalSystem.returnVehicle(vehicle, customer, LocalDate.now(), random.nextInt(20));
+            case SEARCH:
+                return rentalSystem.findVehicleByPlate(plate(random.nextInt(nextPlate.get()))) != null
+                    && rentalSystem.findCustomerById(customer.getCustomerId()) != null;
+            default:
+                int i = nextPlate.getAndIncrement();
+                if (i >= 17_576_000) {
+                    return false;
+                }
+                return rentalSystem.addVehicle(newVehicle(i, new Random(i)));
+        }
+    }
+
+    // No vehicle rented twice without a return in between, and every final status matches the history
+    private List<String> checkConsistency() {
+        List<String> problems = new ArrayList<>();
+        RentalHistory history = rentalSystem.getRentalHistory();
+        Map<String, String> lastType = new HashMap<>();
+        for (RentalRecord record : history.getRentalHistory()) {
+            String plate = record.getVehicle().getLicensePlate();
+            String previous = lastType.put(plate, record.getTransactionType());
+            if (record.getTransactionType().equals(previous)) {
+                problems.add(plate + ": two " + previous + " records in a row");
+            }
+        }
+        for (Vehicle vehicle : rentalSystem.getVehicles()) {
+            boolean open = history.getOpenRental(vehicle.getLicensePlate()) != null;
+            boolean rented = vehicle.getStatus() == Vehicle.VehicleStatus.RENTED;
+            if (open != rented) {
+                problems.add(vehicle.getLicensePlate() + ": status " + vehicle.getStatus() + " but open rental = " + open);
+            }
+        }
+        return problems;
+    }
+
+    private static class ClientStats {
+        private Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        private Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        private Map<Operation, Integer> rejected = new EnumMap<>(Operation.class);
+        private int errors;
+
+        void record(Operation operation, long nanos, boolean ok) {
+            int n = counts.getOrDefault(operation, 0);
+            long[] samples = latencies.get(operation);
+            if (samples == null || samples.length == n) {
+                samples = Arrays.copyOf(samples == null ? new long[0] : samples, Math.max(1024, n * 2));
+                latencies.put(operation, samples);
+            }
+            samples[n] = nanos;
+            counts.put(operation, n + 1);
+            if (!ok) {
+                rejected.merge(operation, 1, Integer::sum);
+            }
+        }
+    }
+
+    public static class Report {
+        private int clients;
+        private int seconds;
+        private boolean virtualThreads;
+        private Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        private Map<Operation, Integer> rejected = new EnumMap<>(Operation.class);
+        private int errors;
+        private List<String> consistencyProblems = new ArrayList<>();
+
+        Report(int clients, int seconds, boolean virtualThreads) {
+            this.clients = clients;
+            this.seconds = seconds;
+            this.virtualThreads = virtualThreads;
+        }
+
+        void add(ClientStats stats) {
+            for (Map.Entry<Operation, long[]> entry : stats.latencies.entrySet()) {
+                long[] samples = Arrays.copyOf(entry.getValue(), stats.counts.get(entry.getKey()));
+                long[] merged = latencies.get(entry.getKey());
+                if (merged == null) {
+                    latencies.put(entry.getKey(), samples);
+                } else {
+                    long[] combined = Arrays.copyOf(merged, merged.length + samples.length);
+                    System.arraycopy(samples, 0, combined, merged.length, samples.length);
+                    latencies.put(entry.getKey(), combined);
+                }
+            }
+            stats.rejected.forEach((operation, n) -> rejected.merge(operation, n, Integer::sum));
+            errors += stats.errors;
+        }
+
+        void setConsistency(List<String> problems) {
+            consistencyProblems = problems;
+        }
+
+        public long totalOperations() {
+            return latencies.values().stream().mapToLong(samples -> samples.length).sum();
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public List<String> getConsistencyProblems() {
+            return consistencyProblems;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Clients: %d (%s threads) | Duration: %d s | Throughput: %.0f ops/s | Errors: %d%n",
+                clients, virtualThreads ? "virtual" : "platform", seconds, (double) totalOperations() / seconds, errors));
+            out.append(String.format("%-8s %10s %10s %10s %10s %10s %10s%n", "Op", "Count", "Rejected", "p50 us", "p99 us", "p99.9 us", "max us"));
+            for (Map.Entry<Operation, long[]> entry : latencies.entrySet()) {
+                long[] samples = entry.getValue();
+                Arrays.sort(samples);
+                out.append(String.format("%-8s %10d %10d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), samples.length,
+                    rejected.getOrDefault(entry.getKey(), 0), percentile(samples, 50), percentile(samples, 99),
+                    percentile(samples, 99.9), samples.length == 0 ? 0.0 : samples[samples.length - 1] / 1000.0));
+            }
+            out.append(consistencyProblems.isEmpty()
+                ? "Consistency: OK"
+                : "Consistency: " + consistencyProblems.size() + " problems, e.g. " + consistencyProblems.get(0));
+            return out.toString();
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0.0;
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+        }
+    }
+}